@@ -36,6 +36,8 @@ import cloud.orbit.container.Container;
 
 import org.glassfish.hk2.api.ServiceLocator;
 
+import java.util.Collection;
+
 public class HK2LifetimeExtension implements LifetimeExtension
 {
     private ServiceLocator serviceLocator = null;
@@ -61,7 +63,8 @@ public class HK2LifetimeExtension implements LifetimeExtension
     {
         if(container != null)
         {
-            container.inject(actor);
+            // Completes once the async services the actor needs are ready and injected
+            return container.injectActorAsync(actor);
         }
         else if(serviceLocator != null)
         {
@@ -71,6 +74,35 @@ public class HK2LifetimeExtension implements LifetimeExtension
         return Task.done();
     }
 
+    /**
+     * Same as {@link #preActivation(AbstractActor)} for many actors at once, such as the ones taken over after a
+     * rebalance.
+     */
+    public Task<Void> preActivationAll(Collection<? extends AbstractActor<?>> actors)
+    {
+        if(container != null)
+        {
+            return container.injectActorsAsync(actors);
+        }
+        else if(serviceLocator != null)
+        {
+            actors.forEach(serviceLocator::inject);
+        }
+
+        return Task.done();
+    }
+
+    @Override
+    public Task postDeactivation(AbstractActor actor)
+    {
+        if(container != null)
+        {
+            container.releaseActor(actor);
+        }
+
+        return Task.done();
+    }
+
     public void setServiceLocator(ServiceLocator serviceLocator)
     {
         this.serviceLocator = serviceLocator;
@@ -0,0 +1,202 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Context;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+
+import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The HK2 context behind {@link ActorScoped}. The actor being injected is tracked per thread, instances are kept per
+ * actor and only for actors that actually got some, until the actor is released.
+ */
+@Singleton
+class ActorScopeContext implements Context<ActorScoped>
+{
+    private static final Logger logger = LoggerFactory.getLogger(ActorScopeContext.class);
+
+    private final ThreadLocal<ActorKey> currentActor = new ThreadLocal<>();
+    private final Map<ActorKey, Map<ActiveDescriptor<?>, Object>> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Actors are told apart by identity whatever their equals does.
+     */
+    private static final class ActorKey
+    {
+        private final Object actor;
+
+        private ActorKey(final Object actor)
+        {
+            this.actor = actor;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            return o instanceof ActorKey && ((ActorKey) o).actor == actor;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(actor);
+        }
+    }
+
+    /**
+     * Makes the actor the current one on this thread.
+     *
+     * @return the previous actor, to be given back to {@link #leave(Object)}
+     */
+    Object enter(final Object actor)
+    {
+        final ActorKey previous = currentActor.get();
+        currentActor.set(new ActorKey(actor));
+        return previous;
+    }
+
+    void leave(final Object previous)
+    {
+        if (previous == null)
+        {
+            currentActor.remove();
+        }
+        else
+        {
+            currentActor.set((ActorKey) previous);
+        }
+    }
+
+    /**
+     * Disposes of the actor scoped instances created for the actor.
+     */
+    void release(final Object actor)
+    {
+        final Map<ActiveDescriptor<?>, Object> actorInstances = instances.remove(new ActorKey(actor));
+        if (actorInstances != null)
+        {
+            actorInstances.forEach(ActorScopeContext::dispose);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void dispose(final ActiveDescriptor<?> descriptor, final Object instance)
+    {
+        try
+        {
+            ((ActiveDescriptor<Object>) descriptor).dispose(instance);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Error disposing of actor scoped {}.", descriptor.getImplementation(), e);
+        }
+    }
+
+    @Override
+    public Class<? extends Annotation> getScope()
+    {
+        return ActorScoped.class;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U findOrCreate(final ActiveDescriptor<U> activeDescriptor, final ServiceHandle<?> root)
+    {
+        final ActorKey actor = currentActor.get();
+        if (actor == null)
+        {
+            throw new IllegalStateException("No actor is being injected, can't provide actor scoped " + activeDescriptor.getImplementation());
+        }
+
+        final Map<ActiveDescriptor<?>, Object> actorInstances = instances.computeIfAbsent(actor, k -> new ConcurrentHashMap<>());
+        final Object existing = actorInstances.get(activeDescriptor);
+        if (existing != null)
+        {
+            return (U) existing;
+        }
+
+        // Not computeIfAbsent, creating the instance may inject other actor scoped services
+        final U created = activeDescriptor.create(root);
+        final Object raced = actorInstances.putIfAbsent(activeDescriptor, created);
+        if (raced != null)
+        {
+            dispose(activeDescriptor, created);
+            return (U) raced;
+        }
+        return created;
+    }
+
+    @Override
+    public boolean containsKey(final ActiveDescriptor<?> descriptor)
+    {
+        final ActorKey actor = currentActor.get();
+        final Map<ActiveDescriptor<?>, Object> actorInstances = actor != null ? instances.get(actor) : null;
+        return actorInstances != null && actorInstances.containsKey(descriptor);
+    }
+
+    @Override
+    public void destroyOne(final ActiveDescriptor<?> descriptor)
+    {
+        for (final Map<ActiveDescriptor<?>, Object> actorInstances : instances.values())
+        {
+            final Object instance = actorInstances.remove(descriptor);
+            if (instance != null)
+            {
+                dispose(descriptor, instance);
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsNullCreation()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isActive()
+    {
+        return true;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        instances.values().forEach(actorInstances -> actorInstances.forEach(ActorScopeContext::dispose));
+        instances.clear();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DescriptorType;
+import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.hk2.utilities.reflection.ParameterizedTypeImpl;
+
+import cloud.orbit.concurrent.Task;
+
+import javax.inject.Singleton;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The service of one {@link AsyncProvider}: the provider's task, shared by every injection, and the descriptors
+ * making {@code Task<T>} and {@code T} injectable.
+ */
+class AsyncService
+{
+    /**
+     * Marks the descriptor of {@code T}, its value is the name of T.
+     */
+    static final String METADATA_KEY = "orbit.container.asyncService";
+
+    private final Class<?> providerClass;
+    private final Class<?> serviceType;
+    private final Function<Class<?>, Object> lookup;
+    private volatile Task<?> task;
+
+    AsyncService(final Class<?> providerClass, final Class<?> serviceType, final Function<Class<?>, Object> lookup)
+    {
+        this.providerClass = providerClass;
+        this.serviceType = serviceType;
+        this.lookup = lookup;
+    }
+
+    /**
+     * @return the T of {@code AsyncProvider<T>} as implemented by the class or its superclasses, or null if it isn't a
+     * plain class
+     */
+    static Class<?> providedType(final Class<?> providerClass)
+    {
+        for (Class<?> classType = providerClass; classType != null && classType != Object.class; classType = classType.getSuperclass())
+        {
+            for (final Type type : classType.getGenericInterfaces())
+            {
+                if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == AsyncProvider.class)
+                {
+                    final Type provided = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    return provided instanceof Class ? (Class<?>) provided : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    public Class<?> getServiceType()
+    {
+        return serviceType;
+    }
+
+    public Task<?> getTask()
+    {
+        Task<?> current = task;
+        if (current == null)
+        {
+            synchronized (this)
+            {
+                current = task;
+                if (current == null)
+                {
+                    current = ((AsyncProvider<?>) lookup.apply(providerClass)).get();
+                    task = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * True once the service can be injected without waiting.
+     */
+    public boolean isReady()
+    {
+        final Task<?> current = task;
+        return current != null && current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    ActiveDescriptor<Object> createTaskDescriptor()
+    {
+        return new Descriptor(new ParameterizedTypeImpl(Task.class, serviceType), Collections.emptyMap(), 0, this::getTask);
+    }
+
+    ActiveDescriptor<Object> createServiceDescriptor()
+    {
+        // Ranked below a regular service of the same type, should there be one
+        return new Descriptor(serviceType, Collections.singletonMap(METADATA_KEY, Collections.singletonList(serviceType.getName())),
+                -1, () -> getTask().join());
+    }
+
+    private class Descriptor extends AbstractActiveDescriptor<Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<Object> creator;
+
+        private Descriptor(final Type contract, final Map<String, List<String>> metadata, final int ranking, final Supplier<Object> creator)
+        {
+            super(Collections.singleton(contract),
+                    Singleton.class,
+                    null,
+                    Collections.emptySet(),
+                    DescriptorType.CLASS,
+                    DescriptorVisibility.NORMAL,
+                    ranking,
+                    null,
+                    null,
+                    null,
+                    metadata);
+            this.creator = creator;
+            setImplementation(providerClass.getName());
+            setScopeAsAnnotation(ServiceLocatorUtilities.getSingletonAnnotation());
+        }
+
+        @Override
+        public Class<?> getImplementationClass()
+        {
+            return providerClass;
+        }
+
+        @Override
+        public Object create(final ServiceHandle<?> root)
+        {
+            return creator.get();
+        }
+    }
+}
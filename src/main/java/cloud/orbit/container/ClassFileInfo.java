@@ -0,0 +1,286 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parts of a class file the container needs to decide whether a class is worth loading,
+ * read straight from the bytes without defining the class.
+ */
+class ClassFileInfo
+{
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    private static final String INNER_CLASSES = "InnerClasses";
+
+    private final String name;
+    private final String superName;
+    private final Set<String> annotations;
+    private final Map<String, InnerClass> innerClasses;
+
+    private ClassFileInfo(final String name, final String superName, final Set<String> annotations, final Map<String, InnerClass> innerClasses)
+    {
+        this.name = name;
+        this.superName = superName;
+        this.annotations = annotations;
+        this.innerClasses = innerClasses;
+    }
+
+    /**
+     * Reads a class file. Attributes are only parsed when the constant pool references one of the
+     * interesting annotation descriptors, everything else stops after the class header.
+     *
+     * @param interestingDescriptors annotation descriptors such as {@code Ljavax/inject/Singleton;}
+     */
+    public static ClassFileInfo read(final InputStream in, final Set<String> interestingDescriptors) throws IOException
+    {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Not a class file");
+        }
+        data.readUnsignedShort(); // minor
+        data.readUnsignedShort(); // major
+
+        final int constantPoolCount = data.readUnsignedShort();
+        final String[] utf8 = new String[constantPoolCount];
+        final int[] classNameIndex = new int[constantPoolCount];
+        boolean interesting = false;
+        for (int i = 1; i < constantPoolCount; i++)
+        {
+            final int tag = data.readUnsignedByte();
+            switch (tag)
+            {
+                case 1: // Utf8
+                    utf8[i] = data.readUTF();
+                    interesting |= interestingDescriptors.contains(utf8[i]);
+                    break;
+                case 7: // Class
+                    classNameIndex[i] = data.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    data.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    data.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    data.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    data.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        data.readUnsignedShort(); // access flags
+        final String name = className(utf8, classNameIndex, data.readUnsignedShort());
+        final String superName = className(utf8, classNameIndex, data.readUnsignedShort());
+
+        if (!interesting)
+        {
+            return new ClassFileInfo(name, superName, Collections.emptySet(), Collections.emptyMap());
+        }
+
+        data.skipBytes(2 * data.readUnsignedShort()); // interfaces
+        skipMembers(data); // fields
+        skipMembers(data); // methods
+
+        final Set<String> annotations = new HashSet<>();
+        final Map<String, InnerClass> innerClasses = new HashMap<>();
+        final int attributeCount = data.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++)
+        {
+            final String attributeName = utf8[data.readUnsignedShort()];
+            final int length = data.readInt();
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName))
+            {
+                final int annotationCount = data.readUnsignedShort();
+                for (int j = 0; j < annotationCount; j++)
+                {
+                    annotations.add(utf8[data.readUnsignedShort()]);
+                    skipElementValuePairs(data);
+                }
+            }
+            else if (INNER_CLASSES.equals(attributeName))
+            {
+                final int classCount = data.readUnsignedShort();
+                for (int j = 0; j < classCount; j++)
+                {
+                    final String innerName = className(utf8, classNameIndex, data.readUnsignedShort());
+                    final String outerName = className(utf8, classNameIndex, data.readUnsignedShort());
+                    data.skipBytes(2); // simple name
+                    final int flags = data.readUnsignedShort();
+                    innerClasses.put(innerName, new InnerClass(outerName, flags));
+                }
+            }
+            else
+            {
+                data.skipBytes(length);
+            }
+        }
+
+        return new ClassFileInfo(name, superName, annotations, innerClasses);
+    }
+
+    private static String className(final String[] utf8, final int[] classNameIndex, final int index)
+    {
+        return index == 0 ? null : utf8[classNameIndex[index]].replace('/', '.');
+    }
+
+    private static void skipMembers(final DataInputStream data) throws IOException
+    {
+        final int memberCount = data.readUnsignedShort();
+        for (int i = 0; i < memberCount; i++)
+        {
+            data.skipBytes(6); // access flags, name, descriptor
+            final int attributeCount = data.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++)
+            {
+                data.skipBytes(2);
+                data.skipBytes(data.readInt());
+            }
+        }
+    }
+
+    private static void skipElementValuePairs(final DataInputStream data) throws IOException
+    {
+        final int pairCount = data.readUnsignedShort();
+        for (int i = 0; i < pairCount; i++)
+        {
+            data.skipBytes(2);
+            skipElementValue(data);
+        }
+    }
+
+    private static void skipElementValue(final DataInputStream data) throws IOException
+    {
+        final int tag = data.readUnsignedByte();
+        switch (tag)
+        {
+            case 'e':
+                data.skipBytes(4);
+                break;
+            case '@':
+                data.skipBytes(2);
+                skipElementValuePairs(data);
+                break;
+            case '[':
+                final int valueCount = data.readUnsignedShort();
+                for (int i = 0; i < valueCount; i++)
+                {
+                    skipElementValue(data);
+                }
+                break;
+            default:
+                data.skipBytes(2);
+                break;
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getSuperName()
+    {
+        return superName;
+    }
+
+    public boolean hasAnyAnnotation(final Set<String> descriptors)
+    {
+        for (final String annotation : annotations)
+        {
+            if (descriptors.contains(annotation))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The InnerClasses entry describing the given nested class, the entries of a nested class
+     * also describe each of its enclosing classes.
+     */
+    public InnerClass getInnerClass(final String className)
+    {
+        return innerClasses.get(className);
+    }
+
+    static class InnerClass
+    {
+        private final String outerName;
+        private final int flags;
+
+        InnerClass(final String outerName, final int flags)
+        {
+            this.outerName = outerName;
+            this.flags = flags;
+        }
+
+        /**
+         * Null for local and anonymous classes.
+         */
+        public String getOuterName()
+        {
+            return outerName;
+        }
+
+        public boolean isPublic()
+        {
+            return Modifier.isPublic(flags);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A jar or directory on the classpath, read without going through a class loader.
+ */
+class ClassPathEntry implements AutoCloseable
+{
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final File file;
+    private ZipFile zipFile;
+    private String hash;
+
+    ClassPathEntry(final File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * The entries of the class loader and its parents, parents first. The Class-Path of jar manifests is followed,
+     * each referenced entry coming right after the jar referencing it.
+     */
+    public static List<ClassPathEntry> from(final ClassLoader classLoader)
+    {
+        final List<ClassLoader> classLoaders = new ArrayList<>();
+        for (ClassLoader current = classLoader; current != null; current = current.getParent())
+        {
+            classLoaders.add(current);
+        }
+        Collections.reverse(classLoaders);
+
+        final List<File> roots = new ArrayList<>();
+        for (final ClassLoader current : classLoaders)
+        {
+            if (current instanceof URLClassLoader)
+            {
+                for (final URL url : ((URLClassLoader) current).getURLs())
+                {
+                    if ("file".equals(url.getProtocol()))
+                    {
+                        roots.add(toFile(url));
+                    }
+                }
+            }
+        }
+
+        // The application class loader stopped being a URLClassLoader in Java 9
+        if (roots.isEmpty())
+        {
+            for (final String path : System.getProperty("java.class.path", "").split(File.pathSeparator))
+            {
+                if (!path.isEmpty())
+                {
+                    roots.add(new File(path));
+                }
+            }
+        }
+
+        final Set<File> files = new LinkedHashSet<>();
+        for (final File root : roots)
+        {
+            addWithManifestClassPath(root.getAbsoluteFile(), files);
+        }
+
+        final List<ClassPathEntry> entries = new ArrayList<>();
+        for (final File file : files)
+        {
+            entries.add(new ClassPathEntry(file));
+        }
+        return entries;
+    }
+
+    private static void addWithManifestClassPath(final File file, final Set<File> files)
+    {
+        if (!file.exists() || !files.add(file) || file.isDirectory())
+        {
+            return;
+        }
+
+        // As with java -jar, the paths are URLs relative to the jar, entries that aren't local files are skipped
+        final String classPath;
+        try (JarFile jarFile = new JarFile(file))
+        {
+            final Manifest manifest = jarFile.getManifest();
+            classPath = manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+        }
+        catch (IOException e)
+        {
+            return;
+        }
+        if (classPath == null)
+        {
+            return;
+        }
+
+        for (final String path : classPath.trim().split("\\s+"))
+        {
+            if (path.isEmpty())
+            {
+                continue;
+            }
+            try
+            {
+                final URL url = new URL(file.toURI().toURL(), path);
+                if ("file".equals(url.getProtocol()))
+                {
+                    addWithManifestClassPath(toFile(url).getAbsoluteFile(), files);
+                }
+            }
+            catch (MalformedURLException e)
+            {
+                // Ignored, as the JVM does
+            }
+        }
+    }
+
+    private static File toFile(final URL url)
+    {
+        try
+        {
+            return new File(url.toURI());
+        }
+        catch (URISyntaxException | IllegalArgumentException e)
+        {
+            return new File(url.getPath());
+        }
+    }
+
+    public String getPath()
+    {
+        return file.getPath();
+    }
+
+    public boolean isDirectory()
+    {
+        return file.isDirectory();
+    }
+
+    public long getSize()
+    {
+        return file.length();
+    }
+
+    public long getLastModified()
+    {
+        return file.lastModified();
+    }
+
+    public String getHash() throws IOException
+    {
+        if (hash == null)
+        {
+            hash = Files.hash(file, Hashing.sha1()).toString();
+        }
+        return hash;
+    }
+
+    /**
+     * The binary names of the classes in this entry.
+     */
+    public List<String> getClassNames() throws IOException
+    {
+        final List<String> classNames = new ArrayList<>();
+        if (isDirectory())
+        {
+            collectClassNames(file, "", classNames);
+        }
+        else
+        {
+            final Enumeration<? extends ZipEntry> zipEntries = getZipFile().entries();
+            while (zipEntries.hasMoreElements())
+            {
+                final String name = zipEntries.nextElement().getName();
+                if (isClassFile(name))
+                {
+                    classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+                }
+            }
+        }
+        return classNames;
+    }
+
+    public InputStream openClass(final String className) throws IOException
+    {
+        final String resourceName = className.replace('.', '/') + CLASS_SUFFIX;
+        if (isDirectory())
+        {
+            return new FileInputStream(new File(file, resourceName));
+        }
+
+        final ZipEntry zipEntry = getZipFile().getEntry(resourceName);
+        if (zipEntry == null)
+        {
+            throw new IOException(resourceName + " not found in " + file);
+        }
+        return getZipFile().getInputStream(zipEntry);
+    }
+
+    /**
+     * The names of the resources directly in the directory, sorted, the directory name ends with a slash.
+     */
+    public List<String> getResourceNames(final String directory) throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+        if (isDirectory())
+        {
+            final File[] files = new File(file, directory).listFiles();
+            if (files != null)
+            {
+                for (final File child : files)
+                {
+                    if (child.isFile())
+                    {
+                        names.add(directory + child.getName());
+                    }
+                }
+            }
+        }
+        else
+        {
+            final Enumeration<? extends ZipEntry> zipEntries = getZipFile().entries();
+            while (zipEntries.hasMoreElements())
+            {
+                final String name = zipEntries.nextElement().getName();
+                if (isDirectChild(name, directory))
+                {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * The names of the resources directly in a directory a class loader found, as {@link #getResourceNames(String)}
+     * lists them. Directories that are neither in a file system directory nor in a jar are not listed.
+     */
+    static List<String> getResourceNames(final URL directoryUrl, final String directory) throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+        if ("file".equals(directoryUrl.getProtocol()))
+        {
+            final File[] files = toFile(directoryUrl).listFiles();
+            if (files != null)
+            {
+                for (final File child : files)
+                {
+                    if (child.isFile())
+                    {
+                        names.add(directory + child.getName());
+                    }
+                }
+            }
+        }
+        else if ("jar".equals(directoryUrl.getProtocol()))
+        {
+            final URLConnection connection = directoryUrl.openConnection();
+            if (connection instanceof JarURLConnection)
+            {
+                connection.setUseCaches(false);
+                try (JarFile jarFile = ((JarURLConnection) connection).getJarFile())
+                {
+                    final Enumeration<JarEntry> jarEntries = jarFile.entries();
+                    while (jarEntries.hasMoreElements())
+                    {
+                        final String name = jarEntries.nextElement().getName();
+                        if (isDirectChild(name, directory))
+                        {
+                            names.add(name);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @return the resource, or null if this entry doesn't have it
+     */
+    public InputStream openResource(final String resourceName) throws IOException
+    {
+        if (isDirectory())
+        {
+            final File resource = new File(file, resourceName);
+            return resource.isFile() ? new FileInputStream(resource) : null;
+        }
+
+        final ZipEntry zipEntry = getZipFile().getEntry(resourceName);
+        return zipEntry != null ? getZipFile().getInputStream(zipEntry) : null;
+    }
+
+    private synchronized ZipFile getZipFile() throws IOException
+    {
+        if (zipFile == null)
+        {
+            zipFile = new ZipFile(file);
+        }
+        return zipFile;
+    }
+
+    private static void collectClassNames(final File directory, final String packagePrefix, final List<String> classNames)
+    {
+        final File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        for (final File child : files)
+        {
+            if (child.isDirectory())
+            {
+                collectClassNames(child, packagePrefix + child.getName() + ".", classNames);
+            }
+            else if (isClassFile(child.getName()))
+            {
+                final String name = child.getName();
+                classNames.add(packagePrefix + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    private static boolean isDirectChild(final String name, final String directory)
+    {
+        return name.startsWith(directory) && name.length() > directory.length() && name.indexOf('/', directory.length()) < 0;
+    }
+
+    private static boolean isClassFile(final String name)
+    {
+        return name.endsWith(CLASS_SUFFIX) && !name.endsWith("module-info" + CLASS_SUFFIX) && !name.startsWith("META-INF/");
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (zipFile != null)
+        {
+            zipFile.close();
+            zipFile = null;
+        }
+    }
+}
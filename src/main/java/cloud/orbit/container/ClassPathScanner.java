@@ -0,0 +1,438 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.jvnet.hk2.annotations.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.reflect.ClassPath;
+
+import cloud.orbit.container.config.ContainerConfig;
+import cloud.orbit.exception.UncheckedException;
+
+import javax.inject.Singleton;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Finds services, and actor classes, on the classpath for a single container start.
+ * <p>
+ * Each classpath root is read from its build time {@link ServiceIndex} if it has one, otherwise from the scan cache
+ * (orbit.container.scanCache) or a crawl of the root. A crawl either loads every class or, with
+ * orbit.container.bytecodeScan, only the annotated ones. With orbit.container.parallelScan the loading work is spread over a fork-join pool, results
+ * always keep scan order.
+ */
+class ClassPathScanner implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ClassPathScanner.class);
+
+    static final String ACTOR_CLASS = "cloud.orbit.actors.runtime.AbstractActor";
+
+    private static final Set<String> SERVICE_DESCRIPTORS = new HashSet<>(Arrays.asList(
+            descriptorOf(Singleton.class),
+            descriptorOf(Service.class)
+    ));
+
+    // Classes carrying any of these are registered, actor scoped ones as descriptors rather than constants
+    private static final Set<String> REGISTERED_DESCRIPTORS = new HashSet<>(Arrays.asList(
+            descriptorOf(Singleton.class),
+            descriptorOf(Service.class),
+            descriptorOf(ActorScoped.class)
+    ));
+
+    private final ClassLoader classLoader;
+    private final boolean bytecodeScan;
+    private final ForkJoinPool scanPool;
+    private final ScanCache scanCache;
+
+    private List<ClassPathEntry> classPathEntries;
+    private PackageTrie<ClassPath.ClassInfo> classPathTrie;
+
+    @FunctionalInterface
+    private interface ClassFileOpener<T>
+    {
+        InputStream open(T item) throws IOException;
+    }
+
+    ClassPathScanner(final ClassLoader classLoader, final ContainerConfig config)
+    {
+        this.classLoader = classLoader;
+        this.bytecodeScan = config.getAsBoolean("orbit.container.bytecodeScan", false);
+        this.scanPool = config.getAsBoolean("orbit.container.parallelScan", false)
+                ? new ForkJoinPool(config.getAsInt("orbit.container.scanParallelism", Runtime.getRuntime().availableProcessors()))
+                : null;
+
+        final String scanCacheFile = config.getAsString("orbit.container.scanCache", null);
+        this.scanCache = scanCacheFile != null ? ScanCache.load(new File(scanCacheFile)) : null;
+    }
+
+    /**
+     * Finds the classes of the packages, grouped by root class and listed as processClass would visit them.
+     */
+    public List<List<Class<?>>> scanPackages(final List<String> packages) throws Exception
+    {
+        if (getClassPathEntries().isEmpty())
+        {
+            // The roots can't be listed, so there is no telling which of them the indexes cover
+            final List<String> indexedClasses = ServiceIndex.read(classLoader);
+            if (indexedClasses != null)
+            {
+                return inspect(collectRecursive(trieOf(indexedClasses), packages), this::loadClass);
+            }
+        }
+
+        final Map<ClassPathEntry, List<String>> entryIndexes = new LinkedHashMap<>();
+        for (final ClassPathEntry classPathEntry : getClassPathEntries())
+        {
+            final List<String> entryIndex = ServiceIndex.read(classPathEntry);
+            if (entryIndex != null)
+            {
+                entryIndexes.put(classPathEntry, entryIndex);
+            }
+        }
+
+        if (!entryIndexes.isEmpty() || scanCache != null)
+        {
+            // Roots built without an index, by an older orbit-hk2 or without annotation processing, are still scanned
+            final String packagesKey = String.join(",", new TreeSet<>(packages));
+            final Set<String> serviceClasses = new LinkedHashSet<>();
+            for (final ClassPathEntry classPathEntry : getClassPathEntries())
+            {
+                final List<String> entryIndex = entryIndexes.get(classPathEntry);
+                if (entryIndex != null)
+                {
+                    serviceClasses.addAll(collectRecursive(trieOf(entryIndex), packages));
+                }
+                else if (scanCache != null)
+                {
+                    serviceClasses.addAll(scanCache.getServiceClasses(classPathEntry, packagesKey, entry -> findServiceClassNames(entry, packages)));
+                }
+                else
+                {
+                    serviceClasses.addAll(findServiceClassNames(classPathEntry, packages));
+                }
+            }
+            return inspect(serviceClasses, this::loadClass);
+        }
+
+        final Set<ClassPath.ClassInfo> classInfos = collectRecursive(getClassPathTrie(), packages);
+        if (bytecodeScan)
+        {
+            // Only define the classes whose bytes carry one of the service annotations, or that extend an actor
+            return inspect(findServiceClasses(classInfos, classInfo -> classInfo.url().openStream()), this::loadClass);
+        }
+
+        final List<ClassPath.ClassInfo> topLevelClasses = classInfos.stream()
+                .filter(classInfo -> isTopLevel(classInfo.getName()))
+                .collect(Collectors.toList());
+        return inspect(topLevelClasses, ClassPath.ClassInfo::load);
+    }
+
+    private List<String> findServiceClassNames(final ClassPathEntry classPathEntry, final List<String> packages) throws Exception
+    {
+        final Set<String> classNames = collectRecursive(getEntryTrie(classPathEntry), packages);
+        if (bytecodeScan)
+        {
+            return findServiceClasses(classNames, classPathEntry::openClass);
+        }
+
+        final List<String> topLevelClasses = classNames.stream()
+                .filter(ClassPathScanner::isTopLevel)
+                .collect(Collectors.toList());
+        return inspect(topLevelClasses, this::loadClass).stream()
+                .flatMap(List::stream)
+                .filter(classType -> isService(classType) || classType.isAnnotationPresent(ActorScoped.class) || isActorClass(classType))
+                .map(Class::getName)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<String> findServiceClasses(final Collection<T> items, final ClassFileOpener<T> opener) throws Exception
+    {
+        final List<ClassFileInfo> classFiles = map(items, item ->
+        {
+            try (InputStream in = new BufferedInputStream(opener.open(item)))
+            {
+                return ClassFileInfo.read(in, REGISTERED_DESCRIPTORS);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedException(e);
+            }
+        });
+
+        final Map<String, ClassFileInfo> classFilesByName = new LinkedHashMap<>();
+        classFiles.forEach(classFile -> classFilesByName.put(classFile.getName(), classFile));
+
+        final List<String> serviceClasses = new ArrayList<>();
+        for (final ClassFileInfo classFile : classFiles)
+        {
+            if ((classFile.hasAnyAnnotation(REGISTERED_DESCRIPTORS) || isActorClass(classFile, classFilesByName))
+                    && isReachable(classFile, classFile.getName(), classFilesByName))
+            {
+                serviceClasses.add(classFile.getName());
+            }
+        }
+        return serviceClasses;
+    }
+
+    private static boolean isActorClass(final ClassFileInfo classFile, final Map<String, ClassFileInfo> classFiles)
+    {
+        // Actors extending a class outside the scanned packages, other than AbstractActor itself, are not found
+        for (ClassFileInfo current = classFile; current != null; current = classFiles.get(current.getSuperName()))
+        {
+            if (ACTOR_CLASS.equals(current.getSuperName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isReachable(final ClassFileInfo classFile, final String className, final Map<String, ClassFileInfo> classFiles)
+    {
+        // Mirror processClass, it only recurses into the public member classes of non service classes
+        final ClassFileInfo.InnerClass innerClass = classFile.getInnerClass(className);
+        if (innerClass == null)
+        {
+            return true;
+        }
+        if (innerClass.getOuterName() == null || !innerClass.isPublic())
+        {
+            return false;
+        }
+
+        final ClassFileInfo outerClassFile = classFiles.get(innerClass.getOuterName());
+        if (outerClassFile == null || outerClassFile.hasAnyAnnotation(SERVICE_DESCRIPTORS))
+        {
+            return false;
+        }
+        return isReachable(classFile, innerClass.getOuterName(), classFiles);
+    }
+
+    private <T> List<List<Class<?>>> inspect(final Collection<T> items, final Function<T, Class<?>> loader) throws Exception
+    {
+        return map(items, item -> inspectClass(loader.apply(item)));
+    }
+
+    /**
+     * Applies the function to every item, on the scan pool when there is one. Results keep the order of the items.
+     */
+    private <T, R> List<R> map(final Collection<T> items, final Function<T, R> function) throws Exception
+    {
+        if (scanPool == null)
+        {
+            return items.stream().map(function).collect(Collectors.toList());
+        }
+
+        try
+        {
+            return scanPool.submit(() -> items.parallelStream().map(function).collect(Collectors.toList())).get();
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Lists the class and the public member classes processClass would visit, without touching the container.
+     * Safe to call from any thread.
+     */
+    static List<Class<?>> inspectClass(final Class<?> classType)
+    {
+        final List<Class<?>> classes = new ArrayList<>();
+        inspectClass(classType, classes);
+        return classes;
+    }
+
+    private static void inspectClass(final Class<?> classType, final List<Class<?>> classes)
+    {
+        if (!classes.contains(classType))
+        {
+            classes.add(classType);
+
+            if (!isService(classType))
+            {
+                for (final Class<?> childClass : classType.getClasses())
+                {
+                    inspectClass(childClass, classes);
+                }
+            }
+        }
+    }
+
+    static boolean isService(final Class<?> classType)
+    {
+        return classType.isAnnotationPresent(Singleton.class) || classType.isAnnotationPresent(Service.class);
+    }
+
+    static boolean isActorClass(final Class<?> classType)
+    {
+        // By name, orbit-actors doesn't have to be on the classpath
+        for (Class<?> current = classType.getSuperclass(); current != null; current = current.getSuperclass())
+        {
+            if (ACTOR_CLASS.equals(current.getName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Class<?> loadClass(final String className)
+    {
+        try
+        {
+            return Class.forName(className, true, classLoader);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new UncheckedException(e);
+        }
+    }
+
+    /**
+     * Enumerates the classpath once, every scanned package is looked up in the result.
+     */
+    private PackageTrie<ClassPath.ClassInfo> getClassPathTrie() throws IOException
+    {
+        if (classPathTrie == null)
+        {
+            final PackageTrie<ClassPath.ClassInfo> trie = new PackageTrie<>();
+            for (final ClassPath.ClassInfo classInfo : ClassPath.from(classLoader).getAllClasses())
+            {
+                trie.add(classInfo.getPackageName(), classInfo);
+            }
+            classPathTrie = trie;
+        }
+        return classPathTrie;
+    }
+
+    private List<ClassPathEntry> getClassPathEntries()
+    {
+        if (classPathEntries == null)
+        {
+            classPathEntries = ClassPathEntry.from(classLoader);
+        }
+        return classPathEntries;
+    }
+
+    private static PackageTrie<String> getEntryTrie(final ClassPathEntry classPathEntry) throws IOException
+    {
+        return trieOf(classPathEntry.getClassNames());
+    }
+
+    private static PackageTrie<String> trieOf(final List<String> classNames)
+    {
+        final PackageTrie<String> trie = new PackageTrie<>();
+        classNames.forEach(className -> trie.add(packageOf(className), className));
+        return trie;
+    }
+
+    private static <T> Set<T> collectRecursive(final PackageTrie<T> trie, final List<String> packages)
+    {
+        // Overlapping packages must not yield the same class twice
+        final Set<T> result = new LinkedHashSet<>();
+        for (final String currentPackage : packages)
+        {
+            result.addAll(trie.getRecursive(currentPackage));
+        }
+        return result;
+    }
+
+    private static String packageOf(final String className)
+    {
+        return className.substring(0, Math.max(className.lastIndexOf('.'), 0));
+    }
+
+    private static boolean isTopLevel(final String className)
+    {
+        return className.indexOf('$') == -1;
+    }
+
+    private static String descriptorOf(final Class<?> classType)
+    {
+        return "L" + classType.getName().replace('.', '/') + ";";
+    }
+
+    @Override
+    public void close()
+    {
+        if (scanPool != null)
+        {
+            scanPool.shutdown();
+        }
+
+        if (classPathEntries != null)
+        {
+            for (final ClassPathEntry classPathEntry : classPathEntries)
+            {
+                try
+                {
+                    classPathEntry.close();
+                }
+                catch (IOException e)
+                {
+                    // Nothing to do
+                }
+            }
+        }
+
+        if (scanCache != null)
+        {
+            try
+            {
+                scanCache.save();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to save the scan cache: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classes considered by the container, indexed by the annotations present on them.
+ * <p>
+ * {@link Class} does not override equals/hashCode, so the backing sets compare by identity.
+ */
+public class ClassRegistry
+{
+    private final Set<Class<?>> classes = ConcurrentHashMap.newKeySet();
+    private final List<Class<?>> classesInOrder = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Class<? extends Annotation>, Set<Class<?>>> classesByAnnotation = new ConcurrentHashMap<>();
+
+    /**
+     * @return false if the class was already registered
+     */
+    public boolean add(final Class<?> classType)
+    {
+        if (!classes.add(classType))
+        {
+            return false;
+        }
+        classesInOrder.add(classType);
+
+        for (final Annotation annotation : classType.getAnnotations())
+        {
+            classesByAnnotation.computeIfAbsent(annotation.annotationType(), k -> ConcurrentHashMap.newKeySet()).add(classType);
+        }
+        return true;
+    }
+
+    public boolean contains(final Class<?> classType)
+    {
+        return classes.contains(classType);
+    }
+
+    public Set<Class<?>> getClasses()
+    {
+        return Collections.unmodifiableSet(classes);
+    }
+
+    /**
+     * The registered classes in registration order.
+     */
+    public List<Class<?>> getClassList()
+    {
+        return Collections.unmodifiableList(classesInOrder);
+    }
+
+    /**
+     * The registered classes carrying the annotation, including annotations inherited through {@link java.lang.annotation.Inherited}.
+     */
+    public Set<Class<?>> getClassesAnnotatedWith(final Class<? extends Annotation> annotationType)
+    {
+        final Set<Class<?>> annotatedClasses = classesByAnnotation.get(annotationType);
+        return annotatedClasses != null ? Collections.unmodifiableSet(annotatedClasses) : Collections.emptySet();
+    }
+
+    public int size()
+    {
+        return classes.size();
+    }
+
+    public void clear()
+    {
+        classes.clear();
+        classesInOrder.clear();
+        classesByAnnotation.clear();
+    }
+}
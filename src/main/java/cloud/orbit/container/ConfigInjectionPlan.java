@@ -0,0 +1,196 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import cloud.orbit.annotation.Config;
+import cloud.orbit.container.config.ConfigConverter;
+import cloud.orbit.container.config.ConfigConverters;
+import cloud.orbit.container.config.ContainerConfig;
+import cloud.orbit.exception.UncheckedException;
+import cloud.orbit.reflect.ClassCache;
+import cloud.orbit.reflect.FieldDescriptor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link Config} fields of a class, found once per class. Each field keeps a setter handle and the
+ * {@link ConfigConverter} for its type, so injecting does not reflect over the class again.
+ */
+class ConfigInjectionPlan
+{
+    private static final ConfigInjectionPlan EMPTY = new ConfigInjectionPlan(new ArrayList<>());
+
+    private static final ClassValue<ConfigInjectionPlan> PLANS = new ClassValue<ConfigInjectionPlan>()
+    {
+        @Override
+        protected ConfigInjectionPlan computeValue(final Class<?> type)
+        {
+            final List<ConfigField> configFields = new ArrayList<>();
+            for (final FieldDescriptor fd : ClassCache.shared.getClass(type).getAllInstanceFields())
+            {
+                if (fd.getField().isAnnotationPresent(Config.class))
+                {
+                    configFields.add(new ConfigField(fd.getField()));
+                }
+            }
+            return configFields.isEmpty() ? EMPTY : new ConfigInjectionPlan(configFields);
+        }
+    };
+
+    private final ConfigField[] configFields;
+    private final Set<String> keys;
+
+    private ConfigInjectionPlan(final List<ConfigField> configFields)
+    {
+        this.configFields = configFields.toArray(new ConfigField[configFields.size()]);
+        final Set<String> keys = new LinkedHashSet<>();
+        configFields.forEach(configField -> keys.add(configField.key));
+        this.keys = Collections.unmodifiableSet(keys);
+    }
+
+    public static ConfigInjectionPlan of(final Class<?> type)
+    {
+        return PLANS.get(type);
+    }
+
+    /**
+     * A plan for a single field, the field does not need to carry {@link Config}.
+     */
+    public static ConfigInjectionPlan of(final Field field)
+    {
+        final List<ConfigField> configFields = new ArrayList<>();
+        if (field.isAnnotationPresent(Config.class))
+        {
+            configFields.add(new ConfigField(field));
+        }
+        return configFields.isEmpty() ? EMPTY : new ConfigInjectionPlan(configFields);
+    }
+
+    public boolean isEmpty()
+    {
+        return configFields.length == 0;
+    }
+
+    /**
+     * @return the config keys of the fields
+     */
+    public Set<String> getKeys()
+    {
+        return keys;
+    }
+
+    public void inject(final Object o, final ContainerConfig config)
+    {
+        for (final ConfigField configField : configFields)
+        {
+            configField.inject(o, config);
+        }
+    }
+
+    private static class ConfigField
+    {
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final Field field;
+        private final String key;
+        private final ConfigConverter<?> converter;
+        private final MethodHandle setter;
+
+        private ConfigField(final Field field)
+        {
+            if (Modifier.isFinal(field.getModifiers()))
+            {
+                throw new RuntimeException("Configurable fields should never be final: " + field);
+            }
+
+            field.setAccessible(true);
+
+            this.field = field;
+            this.key = field.getAnnotation(Config.class).value();
+            this.converter = ConfigConverters.forType(field.getType());
+            try
+            {
+                this.setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new UncheckedException(e);
+            }
+        }
+
+        private void inject(final Object o, final ContainerConfig config)
+        {
+            // Missing keys leave the field's default in place
+            final Object value;
+            if (converter != null)
+            {
+                value = config.getAs(key, converter);
+            }
+            else
+            {
+                value = config.getAll().get(key);
+                if (value == null && !Collection.class.isAssignableFrom(field.getType()))
+                {
+                    throw new UncheckedException("Field type not supported for configuration injection: " + field);
+                }
+            }
+
+            if (value != null)
+            {
+                set(o, value);
+            }
+        }
+
+        private void set(final Object o, final Object value)
+        {
+            try
+            {
+                setter.invokeExact(o, value);
+            }
+            catch (RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (Throwable e)
+            {
+                throw new UncheckedException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories of a set of files and runs a callback when any of those files is created, modified or
+ * deleted. Events arriving within the quiet period of each other are coalesced, so an editor writing a file in
+ * several steps triggers a single callback.
+ */
+class ConfigWatcher implements Closeable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Set<Path>> watchedNames = new HashMap<>();
+    private final long quietPeriodMillis;
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    ConfigWatcher(final List<Path> files, final long quietPeriodMillis, final Runnable onChange, final String threadName) throws IOException
+    {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.onChange = onChange;
+
+        final Map<Path, Set<Path>> namesByDirectory = new HashMap<>();
+        for (final Path file : files)
+        {
+            final Path directory = file.getParent();
+            // A missing directory can't be watched, a file created in it later is only seen on restart
+            if(directory != null && Files.isDirectory(directory))
+            {
+                namesByDirectory.computeIfAbsent(directory, d -> new HashSet<>()).add(file.getFileName());
+            }
+        }
+        for (final Map.Entry<Path, Set<Path>> entry : namesByDirectory.entrySet())
+        {
+            final WatchKey key = entry.getKey().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedNames.put(key, entry.getValue());
+        }
+
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    public boolean isWatching()
+    {
+        return !watchedNames.isEmpty();
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (!closed)
+            {
+                if(!isRelevant(watchService.take()))
+                {
+                    continue;
+                }
+
+                // Wait for the writes to settle before reloading
+                WatchKey next;
+                while ((next = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null)
+                {
+                    isRelevant(next);
+                }
+
+                try
+                {
+                    onChange.run();
+                }
+                catch(RuntimeException e)
+                {
+                    logger.error("Error reloading configuration", e);
+                }
+            }
+        }
+        catch(ClosedWatchServiceException | InterruptedException e)
+        {
+            // Closed
+        }
+    }
+
+    private boolean isRelevant(final WatchKey key)
+    {
+        final Set<Path> names = watchedNames.get(key);
+        boolean relevant = false;
+        for (final WatchEvent<?> event : key.pollEvents())
+        {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW || (names != null && names.contains(event.context())))
+            {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        watchService.close();
+    }
+}
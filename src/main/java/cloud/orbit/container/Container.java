@@ -29,44 +29,88 @@
 package cloud.orbit.container;
 
 
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
-import org.jvnet.hk2.annotations.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.reflect.ClassPath;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import cloud.orbit.annotation.Config;
 import cloud.orbit.concurrent.Task;
 import cloud.orbit.container.addons.Addon;
+import cloud.orbit.container.config.ConfigChangeListener;
 import cloud.orbit.container.config.ContainerConfig;
+import cloud.orbit.container.config.ContainerConfigImpl;
 import cloud.orbit.container.config.YAMLConfigReader;
 import cloud.orbit.exception.UncheckedException;
 import cloud.orbit.lifecycle.Startable;
 import cloud.orbit.reflect.ClassCache;
 import cloud.orbit.reflect.FieldDescriptor;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.net.URL;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Singleton
 public class Container implements Startable
 {
     private static final Logger logger = LoggerFactory.getLogger(Container.class);
+    private static final String ADDONS_PACKAGE = "cloud.orbit.container.addons";
+    private static final long DEFAULT_STOP_TIMEOUT_MILLIS = 30000L;
+    private static final long DEFAULT_CONFIG_RELOAD_DELAY_MILLIS = 500L;
+    private static final Object NO_SERVICE = new Object();
     private ServiceLocator serviceLocator;
     private ContainerConfig config;
+    // Only set when the container read the configuration itself, a reload compares the files with what they were
+    private Map<String, Object> configDefaults;
+    private Map<String, Object> configFileValues;
+    private ConfigWatcher configWatcher;
     private String containerName = "orbit-container";
-    private List<Class<?>> discoveredClasses = new ArrayList<>();
-    private List<Object> discoveredServices = new ArrayList<>();
+    private final ClassRegistry classRegistry = new ClassRegistry();
+    private List<Object> discoveredServices = Collections.synchronizedList(new ArrayList<>());
     private List<Addon> discoveredAddons = new ArrayList<>();
+    private final List<Class<?>> actorClasses = new ArrayList<>();
+    private final List<Object> timedOutServices = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, ServiceInjector> injectors = new ConcurrentHashMap<>();
+    private final Set<Long> constantServiceIds = ConcurrentHashMap.newKeySet();
+    private final Map<Class<?>, AsyncService> asyncServices = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<AsyncService>> asyncDependencies = new ConcurrentHashMap<>();
+    private final Map<Class<?>, PrototypeFactory> prototypeFactories = new ConcurrentHashMap<>();
+    private final ActorScopeContext actorScope = new ActorScopeContext();
+    private ActiveDescriptor<?> actorScopeDescriptor;
+    private final Map<Class<?>, InstancePool> instancePools = new ConcurrentHashMap<>();
+    private volatile Map<Class<?>, Object> resolvedServices = new ConcurrentHashMap<>();
 
     private List<String> packagesToScan = new ArrayList<>();
     private List<String> classesToScan = new ArrayList<>();
@@ -85,27 +129,42 @@ public class Container implements Startable
     {
         logger.info("Starting orbit container...");
 
-        try
+        // Read configuration
+        if(config == null)
         {
-            // Read configuration
-            if(config == null)
-            {
-                config = YAMLConfigReader.readConfig();
-            }
+            config = YAMLConfigReader.readDefaultConfig();
+            configDefaults = config.getAll();
+            configFileValues = YAMLConfigReader.readConfigFiles(false);
+            config.putAll(configFileValues);
+        }
 
+        return runLifecycle("start", this::startContainer);
+    }
+
+    private void startContainer()
+    {
+        try
+        {
             // Override the name if needed
             containerName = config.getAsString("orbit.container.name", containerName);
 
             // Create the DI container
             ServiceLocatorFactory factory = ServiceLocatorFactory.getInstance();
             serviceLocator = factory.create(containerName);
-            ServiceLocatorUtilities.addOneConstant(getServiceLocator(), this);
+            addConstant(this);
+            // Removed on stop, a container restarted under the same name gets the same locator back
+            actorScopeDescriptor = ServiceLocatorUtilities.addOneConstant(getServiceLocator(), actorScope);
+            ServiceLocatorUtilities.addOneConstant(getServiceLocator(), new RegistrationListener(),
+                    null, DynamicConfigurationListener.class);
 
             // Discover addons
             discoverAddons();
 
             // Crawl the packages and make the container aware of them
-            crawlPackages();
+            try (ClassPathScanner scanner = new ClassPathScanner(Container.class.getClassLoader(), config))
+            {
+                crawlPackages(scanner);
+            }
         }
         catch(Exception e)
         {
@@ -116,44 +175,202 @@ public class Container implements Startable
         // Initialize singletons/services
         initServices();
 
-        logger.info("Container successfully started.");
+        watchConfig();
 
-        return Task.done();
+        logger.info("Container successfully started.");
     }
 
     public Task stop()
     {
         logger.info("Stopping orbit container...");
 
+        if(config == null)
+        {
+            // Never started nor configured, there is nothing to stop
+            logger.info("Container successfully stopped.");
+            return Task.done();
+        }
+
+        return runLifecycle("stop", this::stopContainer);
+    }
+
+    private void stopContainer()
+    {
+        if(configWatcher != null)
+        {
+            try
+            {
+                configWatcher.close();
+            }
+            catch(IOException e)
+            {
+                logger.error("Error closing the configuration watcher", e);
+            }
+            configWatcher = null;
+        }
+
         destroyServices();
+        actorScope.shutdown();
+        if(actorScopeDescriptor != null)
+        {
+            ServiceLocatorUtilities.removeOneDescriptor(getServiceLocator(), actorScopeDescriptor);
+            actorScopeDescriptor = null;
+        }
+        invalidateResolved();
+        injectors.clear();
+        asyncDependencies.clear();
+        prototypeFactories.clear();
+        instancePools.values().forEach(InstancePool::clear);
+        constantServiceIds.clear();
 
         logger.info("Container successfully stopped.");
+    }
 
-        return Task.done();
+    /**
+     * Runs start or stop work on the caller, or with orbit.container.executor set to "platform" or "virtual", on a
+     * thread of that kind, the returned task completing when the work is done.
+     */
+    private Task<Void> runLifecycle(final String phase, final Runnable work)
+    {
+        final String mode = config.getAsString("orbit.container.executor", ContainerExecutors.CALLER);
+        if(ContainerExecutors.CALLER.equals(mode))
+        {
+            work.run();
+            return Task.done();
+        }
+
+        final ExecutorService executor = ContainerExecutors.create(mode, containerName + "-" + phase);
+        try
+        {
+            return Task.runAsync(work, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * With orbit.container.configReload set, watches the config files and reloads them when they change. Only a
+     * configuration the container read itself is watched, one given to {@link #setConfiguration(ContainerConfig)}
+     * is left alone.
+     */
+    private void watchConfig()
+    {
+        if(!config.getAsBoolean("orbit.container.configReload", false))
+        {
+            return;
+        }
+        if(configFileValues == null)
+        {
+            logger.warn("Configuration reload is enabled, but the configuration was not read by the container.");
+            return;
+        }
+
+        try
+        {
+            final ConfigWatcher watcher = new ConfigWatcher(YAMLConfigReader.getConfigFiles(),
+                    config.getAsLong("orbit.container.configReloadDelayMillis", DEFAULT_CONFIG_RELOAD_DELAY_MILLIS),
+                    this::reloadConfig, containerName + "-config-watcher");
+            if(watcher.isWatching())
+            {
+                watcher.start();
+                configWatcher = watcher;
+            }
+            else
+            {
+                watcher.close();
+            }
+        }
+        catch(IOException e)
+        {
+            logger.error("Error watching the configuration files", e);
+        }
     }
 
-    private void discoverAddons() throws IOException, InstantiationException, IllegalAccessException
+    /**
+     * Reads the configuration files again and applies what changed in them since they were last read, the system
+     * properties and the classpath config are not read again. Values put in the configuration since are kept. The
+     * discovered services with {@link cloud.orbit.annotation.Config} fields on changed keys are injected again, and
+     * notified if they implement {@link ConfigChangeListener}. Pooled instances of classes with such fields are
+     * dropped. Other objects, and values already read from the configuration, are not affected.
+     *
+     * @return the keys whose value was added, changed or removed
+     * @throws UncheckedException if a config file can't be read or parsed, the configuration is then left as it is
+     */
+    public synchronized Set<String> reloadConfig()
     {
-        final ClassPath classPath = ClassPath.from(Container.class.getClassLoader());
+        if(configFileValues == null || !(config instanceof ContainerConfigImpl))
+        {
+            logger.warn("Only a configuration read by the container can be reloaded.");
+            return Collections.emptySet();
+        }
 
-        final Set<ClassPath.ClassInfo> classInfos = classPath.getTopLevelClassesRecursive("cloud.orbit.container.addons");
+        // A file being written may not parse yet, failing here keeps the keys it had
+        final Map<String, Object> newFileValues = YAMLConfigReader.readConfigFiles(true);
+        final Set<String> changedKeys = ((ContainerConfigImpl) config).update(withConfigDefaults(configFileValues),
+                withConfigDefaults(newFileValues));
+        configFileValues = newFileValues;
+        if(changedKeys.isEmpty())
+        {
+            return changedKeys;
+        }
+        logger.info("Configuration reloaded, {} keys changed.", changedKeys.size());
+
+        for (final Object service : new ArrayList<>(discoveredServices))
+        {
+            final ConfigInjectionPlan configPlan = ConfigInjectionPlan.of(service.getClass());
+            final Set<String> serviceKeys = new HashSet<>(configPlan.getKeys());
+            serviceKeys.retainAll(changedKeys);
+            if(serviceKeys.isEmpty())
+            {
+                continue;
+            }
 
-        classInfos.stream()
-                .map(ClassPath.ClassInfo::load)
-                .filter(c -> !c.isInterface() &&  Addon.class.isAssignableFrom(c))
-                .forEach(addonClass ->
+            try
+            {
+                configPlan.inject(service, config);
+                if(service instanceof ConfigChangeListener)
                 {
-                    Addon addon = null;
-                    try
-                    {
-                        addon = (Addon) addonClass.newInstance();
-                    }
-                    catch(Exception e)
-                    {
-                        throw new UncheckedException(e);
-                    }
+                    ((ConfigChangeListener) service).onConfigChanged(Collections.unmodifiableSet(serviceKeys));
+                }
+            }
+            catch(RuntimeException e)
+            {
+                logger.error("Error reconfiguring {}", service.getClass().getName(), e);
+            }
+        }
+
+        // New instances get the new values, pooled ones would keep the old
+        for (final InstancePool pool : instancePools.values())
+        {
+            if(!Collections.disjoint(ConfigInjectionPlan.of(pool.getType()).getKeys(), changedKeys))
+            {
+                pool.clear();
+            }
+        }
+        return changedKeys;
+    }
+
+    /**
+     * Keys removed from the files fall back to the system properties and the classpath config.
+     */
+    private Map<String, Object> withConfigDefaults(final Map<String, Object> fileValues)
+    {
+        final Map<String, Object> values = new HashMap<>(configDefaults);
+        values.putAll(fileValues);
+        return values;
+    }
 
+    private ExecutorService createExecutor(final String purpose)
+    {
+        return ContainerExecutors.create(config.getAsString("orbit.container.executor", ContainerExecutors.CALLER), containerName + "-" + purpose);
+    }
 
+    private void discoverAddons() throws IOException
+    {
+        loadAddons(Container.class.getClassLoader()).forEach(addon ->
+                {
                     packagesToScan.addAll(addon.getPackagesToScan());
                     classesToScan.addAll(addon.getClassesToScan());
 
@@ -163,49 +380,291 @@ public class Container implements Startable
         logger.info("Container discovered {} addons.", discoveredAddons.size());
     }
 
+    /**
+     * The registered addons in priority order.
+     */
+    static List<Addon> loadAddons(final ClassLoader classLoader) throws IOException
+    {
+        final List<Addon> addons = new ArrayList<>();
+        try
+        {
+            ServiceLoader.load(Addon.class, classLoader).forEach(addons::add);
+        }
+        catch(ServiceConfigurationError e)
+        {
+            throw new UncheckedException(e);
+        }
+        addons.sort(Comparator.comparingInt(Addon::getPriority));
+
+        // Addons used to be found by scanning their package, only that package is listed to point out the ones still relying on it
+        final Set<String> registeredAddons = addons.stream().map(addon -> addon.getClass().getName()).collect(Collectors.toSet());
+        for (final String addonClass : findAddonClasses(classLoader))
+        {
+            if(!registeredAddons.contains(addonClass))
+            {
+                logger.warn("Addon {} is ignored, it isn't registered in META-INF/services/{}.", addonClass, Addon.class.getName());
+            }
+        }
+        return addons;
+    }
+
+    private static List<String> findAddonClasses(final ClassLoader classLoader) throws IOException
+    {
+        final String directory = ADDONS_PACKAGE.replace('.', '/') + "/";
+        final List<String> addonClasses = new ArrayList<>();
+        for (final URL directoryUrl : Collections.list(classLoader.getResources(directory)))
+        {
+            for (final String resourceName : ClassPathEntry.getResourceNames(directoryUrl, directory))
+            {
+                if(!resourceName.endsWith(".class") || resourceName.indexOf('$') >= 0)
+                {
+                    continue;
+                }
+                final String className = resourceName.substring(0, resourceName.length() - ".class".length()).replace('/', '.');
+                try
+                {
+                    final Class<?> classType = Class.forName(className, false, classLoader);
+                    if(Addon.class.isAssignableFrom(classType) && !classType.isInterface() && !Modifier.isAbstract(classType.getModifiers()))
+                    {
+                        addonClasses.add(className);
+                    }
+                }
+                catch(ClassNotFoundException | LinkageError e)
+                {
+                    // Not loadable, so it could not have been an addon either
+                }
+            }
+        }
+        return addonClasses;
+    }
+
     private void initServices()
     {
         // Configure addons
         discoveredAddons.forEach(a -> a.configure(this));
 
-        // Configure/inject services
-        discoveredServices.forEach(this::inject);
+        // Configure/inject services, injecting a lazy service activates it and adds it to the discovered services
+        final List<Object> services = new ArrayList<>(discoveredServices);
+        services.forEach(this::inject);
 
         // Run post inject
         discoveredAddons.forEach(a -> a.postInject(this));
 
-        // Start services
-        discoveredServices.forEach(service ->
+        // Before the stage starts, so no activation pays for it
+        prepareActorClasses();
+
+        // Start services, dependencies first, lazy services activated so far have already started
+        final ServiceGraph serviceGraph = new ServiceGraph(services);
+        if(config.getAsBoolean("orbit.container.concurrentStart", false))
+        {
+            startServicesConcurrently(serviceGraph);
+        }
+        else
+        {
+            serviceGraph.getStartOrder().forEach(service -> startService(service).join());
+        }
+    }
+
+    /**
+     * Resolves the injection of every discovered actor class up front, so the first activations after a deploy
+     * don't pay for descriptor resolution and config field discovery.
+     */
+    private void prepareActorClasses()
+    {
+        if(actorClasses.isEmpty() || !config.getAsBoolean("orbit.container.prepareActors", true))
+        {
+            return;
+        }
+
+        // Resolving injectors would activate lazy services before the eager ones have started
+        final boolean resolveInjectors = !config.getAsBoolean("orbit.container.lazyServices", false);
+        final long startTime = System.nanoTime();
+        for (final Class<?> actorClass : actorClasses)
+        {
+            try
+            {
+                ConfigInjectionPlan.of(actorClass);
+                if(resolveInjectors)
                 {
-                    getServiceLocator().postConstruct(service);
+                    getInjector(actorClass);
+                }
+            }
+            catch(RuntimeException e)
+            {
+                // Reported again on activation, that's where it used to surface
+                logger.warn("Unable to prepare injection for actor {}.", actorClass.getName(), e);
+            }
+        }
 
-                    if(service instanceof Startable)
-                    {
-                        ((Startable) service).start().join();
-                    }
-                });
+        logger.info("Container prepared {} actor classes in {} ms.", actorClasses.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Each service starts as soon as the services it injects have started.
+     */
+    private void startServicesConcurrently(final ServiceGraph serviceGraph)
+    {
+        final ExecutorService executor = createExecutor("start");
+        try
+        {
+            final Map<Object, CompletableFuture<?>> started = new IdentityHashMap<>();
+            for (final Object service : serviceGraph.getStartOrder())
+            {
+                final CompletableFuture<?>[] dependencies = serviceGraph.getDependencies(service).stream()
+                        .map(started::get)
+                        .toArray(CompletableFuture[]::new);
+                started.put(service, CompletableFuture.allOf(dependencies).thenComposeAsync(v -> startService(service), executor));
+            }
+            CompletableFuture.allOf(started.values().toArray(new CompletableFuture<?>[started.size()])).join();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
     }
 
+    private CompletableFuture<?> startService(final Object service)
+    {
+        getServiceLocator().postConstruct(service);
+
+        if(service instanceof Startable)
+        {
+            return ((Startable) service).start();
+        }
+        return Task.done();
+    }
+
+    /**
+     * Stops services in reverse dependency order. Every stop gets a deadline (orbit.container.stopTimeoutMillis,
+     * overridable per class with orbit.container.stopTimeoutMillis.&lt;class name&gt;, 0 waits forever), services
+     * that miss it are reported and no longer waited for.
+     */
     private void destroyServices()
     {
-        discoveredServices.forEach(service ->
+        timedOutServices.clear();
+
+        // Lazy services may have been activated since start, the graph has to include them
+        final ServiceGraph graph = new ServiceGraph(new ArrayList<>(discoveredServices));
+        final List<Object> stopOrder = new ArrayList<>(graph.getStartOrder());
+        Collections.reverse(stopOrder);
+
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(containerName + "-stop-timer-%d").setDaemon(true).build());
+        try
+        {
+            if(config.getAsBoolean("orbit.container.concurrentStop", false))
+            {
+                stopServicesConcurrently(graph, stopOrder, timer);
+            }
+            else
+            {
+                stopOrder.forEach(service -> stopService(service, timer).join());
+            }
+        }
+        finally
+        {
+            timer.shutdownNow();
+        }
+
+        if(!timedOutServices.isEmpty())
+        {
+            logger.warn("{} services exceeded their stop timeout: {}", timedOutServices.size(),
+                    timedOutServices.stream().map(service -> service.getClass().getName()).collect(Collectors.joining(", ")));
+        }
+    }
+
+    /**
+     * Each service stops once every service injecting it has stopped or timed out.
+     */
+    private void stopServicesConcurrently(final ServiceGraph graph, final List<Object> stopOrder, final ScheduledExecutorService timer)
+    {
+        final ExecutorService executor = createExecutor("stop");
+        try
+        {
+            final Map<Object, CompletableFuture<?>> stopped = new IdentityHashMap<>();
+            for (final Object service : stopOrder)
+            {
+                final CompletableFuture<?>[] dependents = graph.getDependents(service).stream()
+                        .map(stopped::get)
+                        .toArray(CompletableFuture[]::new);
+                stopped.put(service, CompletableFuture.allOf(dependents).thenComposeAsync(v -> stopService(service, timer), executor));
+            }
+            CompletableFuture.allOf(stopped.values().toArray(new CompletableFuture<?>[stopped.size()])).join();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Completes when the service stopped, failed to stop, or ran out of time. Never completes exceptionally
+     * so one broken service can't hold back the rest of the shutdown.
+     */
+    private CompletableFuture<?> stopService(final Object service, final ScheduledExecutorService timer)
+    {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final AtomicBoolean settled = new AtomicBoolean();
+        try
+        {
+            getServiceLocator().preDestroy(service);
+
+            if(!(service instanceof Startable))
+            {
+                result.complete(null);
+                return result;
+            }
+
+            final Task<?> stopTask = ((Startable) service).stop();
+            stopTask.whenComplete((r, e) ->
+            {
+                if(e != null)
                 {
-                    getServiceLocator().preDestroy(service);
+                    logger.error("Failed to stop " + service.getClass().getName(), e);
+                }
+                if(settled.compareAndSet(false, true))
+                {
+                    result.complete(null);
+                }
+            });
+        }
+        catch(Exception e)
+        {
+            logger.error("Failed to stop " + service.getClass().getName(), e);
+            result.complete(null);
+            return result;
+        }
 
-                    if(service instanceof Startable)
-                    {
-                        ((Startable) service).stop().join();
-                    }
-                });
+        final long timeoutMillis = getStopTimeoutMillis(service);
+        if(timeoutMillis > 0 && !result.isDone())
+        {
+            timer.schedule(() ->
+            {
+                // Recorded before completing, whoever waits for the stop must see it
+                if(settled.compareAndSet(false, true))
+                {
+                    timedOutServices.add(service);
+                    result.complete(null);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    private long getStopTimeoutMillis(final Object service)
+    {
+        final Long defaultTimeout = config.getAsLong("orbit.container.stopTimeoutMillis", DEFAULT_STOP_TIMEOUT_MILLIS);
+        return config.getAsLong("orbit.container.stopTimeoutMillis." + service.getClass().getName(), defaultTimeout);
     }
 
     @SuppressWarnings("unchecked")
-    private void crawlPackages() throws Exception
+    private void crawlPackages(final ClassPathScanner scanner) throws Exception
     {
-        getDiscoveredClasses().clear();
+        classRegistry.clear();
         getDiscoveredServices().clear();
-
-        final ClassPath classPath = ClassPath.from(Container.class.getClassLoader());
+        actorClasses.clear();
+        asyncServices.clear();
 
         // Scan Packages
         final List<String> packages = new ArrayList<>();
@@ -213,16 +672,10 @@ public class Container implements Startable
         if(configPackages != null) packages.addAll(configPackages);
         if(packagesToScan != null) packages.addAll(packagesToScan);
 
-
-        for (final String currentPackage : packages)
+        // Registration always happens here, in scan order, however the scanner found the classes
+        for (final List<Class<?>> classes : scanner.scanPackages(packages))
         {
-            final Set<ClassPath.ClassInfo> classInfos = classPath.getTopLevelClassesRecursive(currentPackage);
-
-            for (final ClassPath.ClassInfo classInfo : classInfos)
-            {
-                final Class<?> loadedClass = classInfo.load();
-                processClass(loadedClass);
-            }
+            registerClasses(classes);
         }
 
         // Scan classes
@@ -235,41 +688,97 @@ public class Container implements Startable
             processClass(Class.forName(currentClass));
         }
 
-        logger.info("Container considered {} classes and discovered {} services.", discoveredClasses.size(), discoveredServices.size());
+        logger.info("Container considered {} classes and discovered {} services.", classRegistry.size(), discoveredServices.size());
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> T processClass(Class<?> classType) throws InstantiationException, IllegalAccessException
+    private void processClass(final Class<?> classType)
     {
-        if(!discoveredClasses.contains(classType))
-        {
-            discoveredClasses.add(classType);
+        registerClasses(ClassPathScanner.inspectClass(classType));
+    }
 
-            if (classType.isAnnotationPresent(Singleton.class) || classType.isAnnotationPresent(Service.class))
+    private void registerClasses(final List<Class<?>> classes)
+    {
+        for (final Class<?> classType : classes)
+        {
+            if(classRegistry.add(classType))
             {
-                // Singletons are a special case as we allow interception
-
-                // Do we have an intercept?
-                Object o = config.getAsInstance(classType.getName(), Object.class);
-                if (o == null)
+                if (ClassPathScanner.isService(classType))
+                {
+                    registerService(classType);
+                }
+                else if (classType.isAnnotationPresent(ActorScoped.class))
                 {
-                    o = getServiceLocator().create(classType);
+                    ServiceLocatorUtilities.addClasses(getServiceLocator(), classType);
                 }
+                else if (ClassPathScanner.isActorClass(classType) && !Modifier.isAbstract(classType.getModifiers()))
+                {
+                    actorClasses.add(classType);
+                }
+            }
+        }
+    }
+
+    private void registerService(final Class<?> classType)
+    {
+        if(AsyncProvider.class.isAssignableFrom(classType))
+        {
+            registerAsyncService(classType);
+        }
 
-                discoveredServices.add(o);
+        // Lazy services are only built when first looked up or injected
+        if(config.getAsBoolean("orbit.container.lazyServices", false) && !classType.isAnnotationPresent(Eager.class))
+        {
+            ServiceLocatorUtilities.addOneDescriptor(getServiceLocator(), new LazyServiceDescriptor(classType, this::activateService), false);
+            return;
+        }
 
-                ServiceLocatorUtilities.addOneConstant(getServiceLocator(), o);
+        final Object o = createService(classType);
 
-                return (T) o;
-            }
+        discoveredServices.add(o);
 
-            final Class<?>[] childClasses = classType.getClasses();
-            for(Class childClass : childClasses)
-            {
-                processClass(childClass);
-            }
+        addConstant(o);
+    }
+
+    private void registerAsyncService(final Class<?> providerClass)
+    {
+        final Class<?> serviceType = AsyncService.providedType(providerClass);
+        if(serviceType == null)
+        {
+            logger.warn("Ignoring async provider {}, the type it provides can't be determined.", providerClass.getName());
+            return;
+        }
+
+        final AsyncService asyncService = new AsyncService(providerClass, serviceType, this::get);
+        asyncServices.put(serviceType, asyncService);
+        ServiceLocatorUtilities.addOneDescriptor(getServiceLocator(), asyncService.createTaskDescriptor(), false);
+        ServiceLocatorUtilities.addOneDescriptor(getServiceLocator(), asyncService.createServiceDescriptor(), false);
+    }
+
+    private Object createService(final Class<?> classType)
+    {
+        // Singletons are a special case as we allow interception
+
+        // Do we have an intercept?
+        Object o = config.getAsInstance(classType.getName(), Object.class);
+        if (o == null)
+        {
+            o = getServiceLocator().create(classType);
         }
-        return null;
+        return o;
+    }
+
+    /**
+     * Builds a lazy service, going through the same steps initServices runs for the others.
+     */
+    private Object activateService(final Class<?> classType)
+    {
+        final Object o = createService(classType);
+        inject(o);
+        startService(o).join();
+
+        discoveredServices.add(o);
+
+        return o;
     }
 
     public void inject(Object o)
@@ -281,7 +790,7 @@ public class Container implements Startable
     {
         if(serviceLocator != null)
         {
-            serviceLocator.inject(o);
+            getInjector(o.getClass()).inject(o);
         }
 
         if(injectConfig)
@@ -299,84 +808,206 @@ public class Container implements Startable
 
 
 
-    protected void injectConfig(Object o) throws IllegalAccessException
+    public void injectAll(Collection<?> objects)
     {
-        for (FieldDescriptor fd : ClassCache.shared.getClass(o.getClass()).getAllInstanceFields())
+        this.injectAll(objects, true);
+    }
+
+    /**
+     * Same as injecting each object, but the injection of each class is looked up once for the batch. Classes with
+     * at least orbit.container.parallelInjectThreshold instances in the batch are injected in parallel.
+     */
+    public void injectAll(Collection<?> objects, boolean injectConfig)
+    {
+        injectAll(objects, injectConfig, false);
+    }
+
+    /**
+     * Injects an actor being activated, its {@link ActorScoped} services are created for it and kept until
+     * {@link #releaseActor(Object)}.
+     */
+    public void injectActor(Object actor)
+    {
+        final Object previous = actorScope.enter(actor);
+        try
         {
-            injectConfig(o, fd.getField());
+            inject(actor);
+        }
+        finally
+        {
+            actorScope.leave(previous);
         }
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    protected void injectConfig(Object o, java.lang.reflect.Field f) throws IllegalAccessException
+    /**
+     * {@link #injectActor(Object)} once the {@link AsyncProvider} services the actor injects are ready, without
+     * blocking for them.
+     */
+    public Task<Void> injectActorAsync(Object actor)
     {
-        final Config configAnnotation = f.getAnnotation(Config.class);
-        if (configAnnotation != null)
+        final List<AsyncService> dependencies = getAsyncDependencies(actor.getClass());
+        if(dependencies.isEmpty())
         {
-            if (Modifier.isFinal(f.getModifiers()))
-            {
-                throw new RuntimeException("Configurable fields should never be final: " + f);
-            }
+            injectActor(actor);
+            return Task.done();
+        }
+        return Task.allOf(dependencies.stream().map(AsyncService::getTask).collect(Collectors.toList())).thenRun(() -> injectActor(actor));
+    }
 
-            f.setAccessible(true);
+    /**
+     * {@link #injectActors(Collection)} once the {@link AsyncProvider} services the actors inject are ready.
+     */
+    public Task<Void> injectActorsAsync(Collection<?> actors)
+    {
+        final Set<AsyncService> dependencies = Collections.newSetFromMap(new IdentityHashMap<>());
+        actors.stream().map(Object::getClass).distinct().forEach(classType -> dependencies.addAll(getAsyncDependencies(classType)));
+        if(dependencies.isEmpty())
+        {
+            injectActors(actors);
+            return Task.done();
+        }
+        return Task.allOf(dependencies.stream().map(AsyncService::getTask).collect(Collectors.toList())).thenRun(() -> injectActors(actors));
+    }
 
-            if (f.getType() == Integer.TYPE || f.getType() == Integer.class)
-            {
-                f.set(o, config.getAsInt(configAnnotation.value(), (Integer) f.get(o)));
-            }
-            else if (f.getType() == Boolean.TYPE || f.getType() == Boolean.class)
-            {
-                f.set(o, config.getAsBoolean(configAnnotation.value(), (Boolean) f.get(o)));
-            }
-            else if (f.getType() == Long.TYPE || f.getType() == Long.class)
-            {
-                f.set(o, config.getAsLong(configAnnotation.value(), (Long) f.get(o)));
-            }
-            else if (f.getType() == String.class)
-            {
-                f.set(o, config.getAsString(configAnnotation.value(), (String) f.get(o)));
-            }
-            else if (f.getType().isEnum())
-            {
-                final String enumValue = config.getAsString(configAnnotation.value(), null);
-                if (enumValue != null)
-                {
-                    f.set(o, Enum.valueOf((Class<Enum>) f.getType(), enumValue));
-                }
-            }
-            else if (List.class.isAssignableFrom(f.getType()))
-            {
-                if ((config.getAll().get(configAnnotation.value()) != null))
-                {
-                    final Object val = config.getAll().get(configAnnotation.value());
-                    f.set(o, val);
-                }
-            }
-            else if (Set.class.isAssignableFrom(f.getType()))
-            {
-                if ((config.getAll().get(configAnnotation.value()) != null))
+    /**
+     * {@link #injectActor(Object)} for a batch of actors, the same way {@link #injectAll(Collection)} works.
+     */
+    public void injectActors(Collection<?> actors)
+    {
+        injectAll(actors, true, true);
+    }
+
+    /**
+     * Disposes of the {@link ActorScoped} services created for the actor.
+     */
+    public void releaseActor(Object actor)
+    {
+        actorScope.release(actor);
+    }
+
+    private void injectAll(final Collection<?> objects, final boolean injectConfig, final boolean actorScoped)
+    {
+        final Map<Class<?>, List<Object>> objectsByClass = new LinkedHashMap<>();
+        for (final Object o : objects)
+        {
+            objectsByClass.computeIfAbsent(o.getClass(), k -> new ArrayList<>()).add(o);
+        }
+
+        final int parallelThreshold = config.getAsInt("orbit.container.parallelInjectThreshold", 0);
+        objectsByClass.forEach((classType, instances) ->
                 {
-                    final Object val = config.getAll().get(configAnnotation.value());
-                    if (val instanceof List)
+                    final ServiceInjector injector = serviceLocator != null ? getInjector(classType) : null;
+                    final ConfigInjectionPlan configPlan = injectConfig ? ConfigInjectionPlan.of(classType) : null;
+                    final Consumer<Object> action = o ->
+                    {
+                        if(injector != null)
+                        {
+                            final Object previous = actorScoped ? actorScope.enter(o) : null;
+                            try
+                            {
+                                injector.inject(o);
+                            }
+                            finally
+                            {
+                                if(actorScoped)
+                                {
+                                    actorScope.leave(previous);
+                                }
+                            }
+                        }
+                        if(configPlan != null)
+                        {
+                            configPlan.inject(o, config);
+                        }
+                    };
+
+                    if(parallelThreshold > 0 && instances.size() >= parallelThreshold)
                     {
-                        f.set(o, new LinkedHashSet((List) val));
+                        instances.parallelStream().forEach(action);
                     }
                     else
                     {
-                        f.set(o, val);
+                        instances.forEach(action);
                     }
-                }
-            }
-            else if (config.getAll().get(configAnnotation.value()) != null)
+                });
+    }
+
+    private ServiceInjector getInjector(final Class<?> classType)
+    {
+        ServiceInjector injector = injectors.get(classType);
+        if(injector == null)
+        {
+            // Not computeIfAbsent, building an injector can activate lazy services which inject in turn
+            injector = ServiceInjector.create(classType, serviceLocator, this::isContainerConstant, this::isAsyncServiceReady);
+            if(injector.isCacheable())
             {
-                final Object val = config.getAll().get(configAnnotation.value());
-                f.set(o, val);
+                final ServiceInjector existing = injectors.putIfAbsent(classType, injector);
+                if(existing != null)
+                {
+                    injector = existing;
+                }
             }
-            else
+        }
+        return injector;
+    }
+
+    boolean isInjectorCached(final Class<?> classType)
+    {
+        return injectors.containsKey(classType);
+    }
+
+    private boolean isAsyncServiceReady(final Class<?> serviceType)
+    {
+        final AsyncService asyncService = asyncServices.get(serviceType);
+        return asyncService != null && asyncService.isReady();
+    }
+
+    /**
+     * The async services the class injects as themselves rather than as tasks, the ones to wait for before
+     * injecting.
+     */
+    private List<AsyncService> getAsyncDependencies(final Class<?> classType)
+    {
+        List<AsyncService> dependencies = asyncDependencies.get(classType);
+        if(dependencies == null)
+        {
+            dependencies = new ArrayList<>();
+            for (final FieldDescriptor fd : ClassCache.shared.getClass(classType).getAllInstanceFields())
             {
-                throw new UncheckedException("Field type not supported for configuration injection: " + f);
+                final AsyncService asyncService = asyncServices.get(fd.getField().getType());
+                if(asyncService != null && fd.getField().isAnnotationPresent(Inject.class)
+                        && serviceLocator.getServiceHandle(fd.getField().getType()).getActiveDescriptor().getMetadata().containsKey(AsyncService.METADATA_KEY))
+                {
+                    dependencies.add(asyncService);
+                }
             }
+            asyncDependencies.put(classType, dependencies);
         }
+        return dependencies;
+    }
+
+    /**
+     * Registers a constant the container owns, lookups can tell it apart from other per-lookup services by its
+     * descriptor, without creating anything.
+     */
+    private void addConstant(final Object o)
+    {
+        constantServiceIds.add(ServiceLocatorUtilities.addOneConstant(getServiceLocator(), o).getServiceId());
+    }
+
+    private boolean isContainerConstant(final ActiveDescriptor<?> descriptor)
+    {
+        return descriptor.getServiceId() != null && constantServiceIds.contains(descriptor.getServiceId());
+    }
+
+    protected void injectConfig(Object o) throws IllegalAccessException
+    {
+        ConfigInjectionPlan.of(o.getClass()).inject(o, config);
+    }
+
+    protected void injectConfig(Object o, java.lang.reflect.Field f) throws IllegalAccessException
+    {
+        ConfigInjectionPlan.of(f).inject(o, config);
     }
 
     public <T> T get(Class<T> clazz)
@@ -386,22 +1017,133 @@ public class Container implements Startable
 
     public <T> T get(Class<T> clazz, boolean shouldCreateInstance)
     {
-        T o = serviceLocator.getService(clazz);
+        T o = resolve(clazz);
         if(o == null && shouldCreateInstance)
         {
-            try
+            final PrototypeFactory factory = getPrototypeFactory(clazz);
+            final InstancePool pool = instancePools.get(clazz);
+            final Object pooled = pool != null ? pool.acquire() : null;
+            o = clazz.cast(pooled != null ? pooled : factory.newInstance(config));
+        }
+        return o;
+    }
+
+    /**
+     * Gives an instance obtained from {@link #get(Class, boolean)} back to its class' pool, resetting it first if it
+     * is {@link Resettable}.
+     *
+     * @return false if the class isn't pooled or its pool is full
+     */
+    public boolean release(Object o)
+    {
+        final InstancePool pool = instancePools.get(o.getClass());
+        if(pool == null)
+        {
+            return false;
+        }
+        if(o instanceof Resettable)
+        {
+            ((Resettable) o).reset();
+        }
+        return pool.release(o);
+    }
+
+    public Collection<InstancePool> getInstancePools()
+    {
+        return Collections.unmodifiableCollection(instancePools.values());
+    }
+
+    private PrototypeFactory getPrototypeFactory(final Class<?> classType)
+    {
+        PrototypeFactory factory = prototypeFactories.get(classType);
+        if(factory == null)
+        {
+            factory = PrototypeFactory.create(classType, serviceLocator, this::resolveShared, this::getInjector);
+
+            final Pooled pooled = classType.getAnnotation(Pooled.class);
+            final int poolSize = config.getAsInt("orbit.container.poolSize." + classType.getName(), pooled != null ? pooled.maxSize() : 0);
+            if(poolSize > 0)
             {
-                o = clazz.newInstance();
-                this.inject(o);
+                instancePools.computeIfAbsent(classType, k -> new InstancePool(classType, poolSize));
             }
-            catch(Exception e)
+
+            final PrototypeFactory existing = prototypeFactories.putIfAbsent(classType, factory);
+            if(existing != null)
             {
-                // Eat it
+                factory = existing;
             }
         }
+        return factory;
+    }
+
+    private Object resolveShared(final Class<?> classType)
+    {
+        // Resolving other scopes, such as the actor scope, only makes sense while injecting
+        final ServiceHandle<?> handle = serviceLocator.getServiceHandle(classType);
+        final String scope = handle != null ? handle.getActiveDescriptor().getScope() : null;
+        if(!Singleton.class.getName().equals(scope) && !PerLookup.class.getName().equals(scope))
+        {
+            return null;
+        }
+
+        final Object o = resolve(classType);
+        return o != null && resolvedServices.get(classType) == o ? o : null;
+    }
+
+    /**
+     * Looks the service up once and keeps it, or its absence, until the next registration. Only singletons and
+     * constants are kept, other scopes are looked up every time.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T resolve(final Class<T> clazz)
+    {
+        // A registration swaps the map, so an answer computed before it can't be kept after it
+        final Map<Class<?>, Object> resolved = resolvedServices;
+        final Object cached = resolved.get(clazz);
+        if(cached != null)
+        {
+            return cached == NO_SERVICE ? null : (T) cached;
+        }
+
+        final ServiceHandle<T> handle = serviceLocator.getServiceHandle(clazz);
+        if(handle == null)
+        {
+            resolved.put(clazz, NO_SERVICE);
+            return null;
+        }
+
+        // Constants are recognized by their descriptor, per-lookup services are never kept
+        final ActiveDescriptor<T> descriptor = handle.getActiveDescriptor();
+        final T o = handle.getService();
+        if(o != null && (Singleton.class.getName().equals(descriptor.getScope()) || isContainerConstant(descriptor)))
+        {
+            resolved.put(clazz, o);
+        }
         return o;
     }
 
+    /**
+     * Forgets resolved services and misses. Injectors, prototype factories and pooled instances keep the services
+     * they were built with, they are only dropped on stop.
+     */
+    private void invalidateResolved()
+    {
+        resolvedServices = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Called by HK2 whenever something is registered in, or removed from, the locator.
+     */
+    @Singleton
+    private class RegistrationListener implements DynamicConfigurationListener
+    {
+        @Override
+        public void configurationChanged()
+        {
+            invalidateResolved();
+        }
+    }
+
     public ContainerConfig getConfiguration()
     {
         return config;
@@ -427,14 +1169,31 @@ public class Container implements Startable
         packagesToScan.add(packageName);
     }
 
+    /**
+     * An unmodifiable view of the discovered classes in discovery order, {@link #getClassRegistry()} answers
+     * membership and annotation queries without scanning it.
+     */
     public List<Class<?>> getDiscoveredClasses() {
-        return discoveredClasses;
+        return classRegistry.getClassList();
+    }
+
+    public ClassRegistry getClassRegistry()
+    {
+        return classRegistry;
     }
 
     public List<Object> getDiscoveredServices() {
         return discoveredServices;
     }
 
+    /**
+     * The services that did not stop within their timeout during the last {@link #stop()}.
+     */
+    public List<Object> getTimedOutServices()
+    {
+        return Collections.unmodifiableList(timedOutServices);
+    }
+
     public String getContainerName()
     {
         return containerName;
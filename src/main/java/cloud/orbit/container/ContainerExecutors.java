@@ -0,0 +1,109 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors for the container's own start and stop work, as chosen by orbit.container.executor: "virtual" runs every
+ * task on its own virtual thread when the runtime has them (found by reflection, this module targets Java 8),
+ * anything else, or a runtime without virtual threads, uses a cached pool of daemon platform threads.
+ */
+class ContainerExecutors
+{
+    private static final Logger logger = LoggerFactory.getLogger(ContainerExecutors.class);
+
+    static final String CALLER = "caller";
+    static final String VIRTUAL = "virtual";
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private ContainerExecutors()
+    {
+
+    }
+
+    private static Method findMethod(final Class<?> type, final String name, final Class<?>... parameterTypes)
+    {
+        try
+        {
+            return type.getMethod(name, parameterTypes);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    static boolean isVirtualThreadSupported()
+    {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param name prefix of the thread names
+     */
+    static ExecutorService create(final String mode, final String name)
+    {
+        if (VIRTUAL.equals(mode))
+        {
+            if (isVirtualThreadSupported())
+            {
+                try
+                {
+                    // Through the public Thread.Builder interface, the builder classes themselves aren't accessible
+                    final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                    Object builder = OF_VIRTUAL.invoke(null);
+                    builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+                    final ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+                    return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+                }
+                catch (ReflectiveOperationException | RuntimeException e)
+                {
+                    logger.warn("Unable to create virtual threads, using platform threads.", e);
+                }
+            }
+            else
+            {
+                logger.info("Virtual threads are not supported by this runtime, using platform threads.");
+            }
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of released instances of one class. The pool is split in stripes picked by thread, so threads
+ * seldom contend for the same lock, each stripe holds its share of the maximum size.
+ */
+public class InstancePool
+{
+    private final Class<?> type;
+    private final int maxSize;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    private static class Stripe
+    {
+        private final ArrayDeque<Object> instances;
+        private final int capacity;
+
+        private Stripe(final int capacity)
+        {
+            this.instances = new ArrayDeque<>(capacity);
+            this.capacity = capacity;
+        }
+    }
+
+    InstancePool(final Class<?> type, final int maxSize)
+    {
+        this.type = type;
+        this.maxSize = maxSize;
+
+        final int stripeCount = stripeCount(maxSize, Runtime.getRuntime().availableProcessors());
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+        {
+            // Spread the remainder so the stripes add up to maxSize
+            stripes[i] = new Stripe(maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0));
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * A power of two, up to the number of processors, never above maxSize so every stripe holds at least one instance.
+     */
+    static int stripeCount(final int maxSize, final int processors)
+    {
+        int stripeCount = 1;
+        while (stripeCount < processors && stripeCount << 1 <= maxSize)
+        {
+            stripeCount <<= 1;
+        }
+        return stripeCount;
+    }
+
+    private Stripe stripe()
+    {
+        return stripes[(int) Thread.currentThread().getId() & stripeMask];
+    }
+
+    /**
+     * @return a pooled instance, or null if this thread's stripe is empty
+     */
+    Object acquire()
+    {
+        final Stripe stripe = stripe();
+        final Object o;
+        synchronized (stripe)
+        {
+            o = stripe.instances.pollLast();
+        }
+        (o != null ? hits : misses).increment();
+        return o;
+    }
+
+    /**
+     * @return false if the stripe was full and the instance was dropped
+     */
+    boolean release(final Object o)
+    {
+        final Stripe stripe = stripe();
+        synchronized (stripe)
+        {
+            if (stripe.instances.size() < stripe.capacity)
+            {
+                stripe.instances.addLast(o);
+                return true;
+            }
+        }
+        discarded.increment();
+        return false;
+    }
+
+    void clear()
+    {
+        for (final Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.instances.clear();
+            }
+        }
+    }
+
+    public Class<?> getType()
+    {
+        return type;
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * The number of idle instances currently pooled.
+     */
+    public int getSize()
+    {
+        int size = 0;
+        for (final Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.instances.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Released instances dropped because the pool was full.
+     */
+    public long getDiscarded()
+    {
+        return discarded.sum();
+    }
+}
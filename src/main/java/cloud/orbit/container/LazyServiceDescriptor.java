@@ -0,0 +1,85 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.DescriptorType;
+import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+import org.jvnet.hk2.annotations.Contract;
+
+import javax.inject.Singleton;
+
+import java.util.Collections;
+import java.util.function.Function;
+
+/**
+ * A singleton descriptor advertising the same contracts as a constant of the class would, but only asking the
+ * container to build the service the first time it is looked up or injected.
+ */
+class LazyServiceDescriptor extends AbstractActiveDescriptor<Object>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> implementationClass;
+    private final Function<Class<?>, Object> activator;
+
+    LazyServiceDescriptor(final Class<?> implementationClass, final Function<Class<?>, Object> activator)
+    {
+        super(ReflectionHelper.getAdvertisedTypesFromClass(implementationClass, Contract.class),
+                Singleton.class,
+                ReflectionHelper.getName(implementationClass),
+                ReflectionHelper.getQualifierAnnotations(implementationClass),
+                DescriptorType.CLASS,
+                DescriptorVisibility.NORMAL,
+                0,
+                null,
+                null,
+                null,
+                Collections.emptyMap());
+        this.implementationClass = implementationClass;
+        this.activator = activator;
+        setImplementation(implementationClass.getName());
+        setScopeAsAnnotation(ServiceLocatorUtilities.getSingletonAnnotation());
+    }
+
+    @Override
+    public Class<?> getImplementationClass()
+    {
+        return implementationClass;
+    }
+
+    @Override
+    public Object create(final ServiceHandle<?> root)
+    {
+        return activator.apply(implementationClass);
+    }
+}
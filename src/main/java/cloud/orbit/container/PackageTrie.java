@@ -0,0 +1,99 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values keyed by package name, stored one package segment per node so that everything under a package
+ * prefix can be collected without looking at unrelated packages.
+ */
+class PackageTrie<T>
+{
+    private final Node<T> root = new Node<>();
+
+    public void add(final String packageName, final T value)
+    {
+        Node<T> node = root;
+        if (!packageName.isEmpty())
+        {
+            for (final String segment : packageName.split("\\."))
+            {
+                node = node.children.computeIfAbsent(segment, k -> new Node<>());
+            }
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Collects the values of the package and all of its sub packages.
+     */
+    public List<T> getRecursive(final String packageName)
+    {
+        final List<T> result = new ArrayList<>();
+        final Node<T> node = find(packageName);
+        if (node != null)
+        {
+            node.collect(result);
+        }
+        return result;
+    }
+
+    private Node<T> find(final String packageName)
+    {
+        Node<T> node = root;
+        if (!packageName.isEmpty())
+        {
+            for (final String segment : packageName.split("\\."))
+            {
+                node = node.children.get(segment);
+                if (node == null)
+                {
+                    return null;
+                }
+            }
+        }
+        return node;
+    }
+
+    private static class Node<T>
+    {
+        private final Map<String, Node<T>> children = new LinkedHashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        private void collect(final List<T> result)
+        {
+            result.addAll(values);
+            children.values().forEach(child -> child.collect(result));
+        }
+    }
+}
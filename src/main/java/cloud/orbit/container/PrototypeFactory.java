@@ -0,0 +1,154 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+
+import cloud.orbit.container.config.ContainerConfig;
+import cloud.orbit.exception.UncheckedException;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.function.Function;
+
+/**
+ * Builds new, non registered, instances of one class for {@link Container#get(Class, boolean)}. The constructor
+ * and its injected arguments are resolved once, when they are all singletons the constructor is bound to them and
+ * a new instance is a constructor call plus the field stores of the class' {@link ServiceInjector}. Other
+ * constructors are left to {@link ServiceLocator#create(Class)}, the instance is injected the same way after.
+ */
+class PrototypeFactory
+{
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<?> type;
+    private final ServiceLocator serviceLocator;
+    private final MethodHandle constructor;
+    private final Function<Class<?>, ServiceInjector> injectors;
+    private final ConfigInjectionPlan configPlan;
+
+    private PrototypeFactory(final Class<?> type, final ServiceLocator serviceLocator, final MethodHandle constructor,
+                             final Function<Class<?>, ServiceInjector> injectors)
+    {
+        this.type = type;
+        this.serviceLocator = serviceLocator;
+        this.constructor = constructor;
+        this.injectors = injectors;
+        this.configPlan = ConfigInjectionPlan.of(type);
+    }
+
+    /**
+     * @param sharedServices returns the singleton or constant service of a class, or null if there is none
+     * @param injectors returns the injector of a class, asked for every instance as injectors that can't be kept
+     *                  yet are replaced later
+     */
+    static PrototypeFactory create(final Class<?> type, final ServiceLocator serviceLocator,
+                                   final Function<Class<?>, Object> sharedServices, final Function<Class<?>, ServiceInjector> injectors)
+    {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+        {
+            throw new UncheckedException("Unable to create an instance of abstract type " + type.getName());
+        }
+
+        Constructor<?> constructor = null;
+        for (final Constructor<?> candidate : type.getDeclaredConstructors())
+        {
+            if (candidate.isAnnotationPresent(Inject.class) || (constructor == null && candidate.getParameterCount() == 0))
+            {
+                constructor = candidate;
+            }
+        }
+        if (constructor == null)
+        {
+            throw new UncheckedException("No injectable constructor found for " + type.getName());
+        }
+
+        final Object[] arguments = new Object[constructor.getParameterCount()];
+        final Parameter[] parameters = constructor.getParameters();
+        for (int i = 0; i < parameters.length; i++)
+        {
+            final Parameter parameter = parameters[i];
+            arguments[i] = parameter.getParameterizedType() instanceof Class
+                    && !Provider.class.isAssignableFrom(parameter.getType())
+                    && ReflectionHelper.getQualifierAnnotations(parameter).isEmpty()
+                    ? sharedServices.apply(parameter.getType()) : null;
+            if (arguments[i] == null)
+            {
+                return new PrototypeFactory(type, serviceLocator, null, injectors);
+            }
+        }
+
+        constructor.setAccessible(true);
+        try
+        {
+            final MethodHandle constructorHandle = MethodHandles.insertArguments(MethodHandles.lookup().unreflectConstructor(constructor), 0, arguments);
+            return new PrototypeFactory(type, serviceLocator, constructorHandle.asType(FACTORY_TYPE), injectors);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new UncheckedException(e);
+        }
+    }
+
+    public Object newInstance(final ContainerConfig config)
+    {
+        final Object o;
+        if (constructor == null)
+        {
+            // Only runs the constructor, fields and methods are injected below
+            o = serviceLocator.create(type);
+        }
+        else
+        {
+            try
+            {
+                o = constructor.invokeExact();
+            }
+            catch (RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (Throwable e)
+            {
+                throw new UncheckedException("Unable to create an instance of " + type.getName(), e);
+            }
+        }
+        injectors.apply(type).inject(o);
+        configPlan.inject(o, config);
+        return o;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service discovery results of previous starts, stored per classpath entry and keyed by the entry's size, modification
+ * time and content hash. Jars whose size and modification time are unchanged are trusted without hashing, a jar
+ * that was only copied or touched is recognized by its hash. Directories are always rescanned.
+ */
+class ScanCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(ScanCache.class);
+
+    private static final String HEADER = "# orbit container scan cache v4";
+    private static final String ENTRY = "entry";
+    private static final String SERVICE = "service";
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+    private final Map<String, Entry> cachedEntries;
+    private final Map<String, Entry> currentEntries = new LinkedHashMap<>();
+    private boolean modified;
+
+    private ScanCache(final File file, final Map<String, Entry> cachedEntries)
+    {
+        this.file = file;
+        this.cachedEntries = cachedEntries;
+    }
+
+    @FunctionalInterface
+    interface EntryScanner
+    {
+        List<String> scan(ClassPathEntry classPathEntry) throws Exception;
+    }
+
+    public static ScanCache load(final File file)
+    {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        if (file.isFile())
+        {
+            try (Reader in = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))
+            {
+                entries.putAll(parse(new BufferedReader(in)));
+            }
+            catch (Exception e)
+            {
+                logger.warn("Ignoring unreadable scan cache {}: {}", file, e.toString());
+                entries.clear();
+            }
+        }
+        return new ScanCache(file, entries);
+    }
+
+    private static Map<String, Entry> parse(final BufferedReader reader) throws IOException
+    {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!HEADER.equals(reader.readLine()))
+        {
+            return entries;
+        }
+
+        Entry entry = null;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            final String[] parts = line.split(SEPARATOR, -1);
+            if (ENTRY.equals(parts[0]))
+            {
+                entry = new Entry(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4], true);
+                if (!parts[5].isEmpty())
+                {
+                    entry.packagesKey = parts[5];
+                    entry.serviceClasses = new ArrayList<>();
+                }
+                entries.put(entry.path, entry);
+            }
+            else if (SERVICE.equals(parts[0]) && entry != null && entry.serviceClasses != null)
+            {
+                entry.serviceClasses.add(parts[1]);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param packagesKey identifies the scanned packages, results for other packages are discarded
+     */
+    public List<String> getServiceClasses(final ClassPathEntry classPathEntry, final String packagesKey, final EntryScanner scanner) throws Exception
+    {
+        final Entry entry = getEntry(classPathEntry);
+        if (entry.serviceClasses == null || !packagesKey.equals(entry.packagesKey))
+        {
+            entry.serviceClasses = scanner.scan(classPathEntry);
+            entry.packagesKey = packagesKey;
+            modified |= entry.persistent;
+        }
+        return entry.serviceClasses;
+    }
+
+    private synchronized Entry getEntry(final ClassPathEntry classPathEntry) throws IOException
+    {
+        Entry entry = currentEntries.get(classPathEntry.getPath());
+        if (entry == null)
+        {
+            entry = getValidEntry(classPathEntry);
+            if (entry == null)
+            {
+                entry = classPathEntry.isDirectory()
+                        ? new Entry(classPathEntry.getPath(), 0, 0, "", false)
+                        : new Entry(classPathEntry.getPath(), classPathEntry.getSize(), classPathEntry.getLastModified(), classPathEntry.getHash(), true);
+                modified |= entry.persistent;
+            }
+            currentEntries.put(entry.path, entry);
+        }
+        return entry;
+    }
+
+    private Entry getValidEntry(final ClassPathEntry classPathEntry) throws IOException
+    {
+        final Entry cached = cachedEntries.get(classPathEntry.getPath());
+        if (cached == null || classPathEntry.isDirectory() || cached.size != classPathEntry.getSize())
+        {
+            return null;
+        }
+        if (cached.lastModified == classPathEntry.getLastModified())
+        {
+            return cached;
+        }
+        if (cached.hash.equals(classPathEntry.getHash()))
+        {
+            cached.lastModified = classPathEntry.getLastModified();
+            modified = true;
+            return cached;
+        }
+        return null;
+    }
+
+    public void save() throws IOException
+    {
+        if (!modified && currentEntries.keySet().equals(cachedEntries.keySet()))
+        {
+            return;
+        }
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        // Write next to the cache and swap, a node killed mid write must not leave a truncated cache behind
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()), StandardCharsets.UTF_8)))
+        {
+            out.write(HEADER);
+            out.write('\n');
+            for (final Entry entry : currentEntries.values())
+            {
+                if (entry.persistent)
+                {
+                    entry.write(out);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class Entry
+    {
+        private final String path;
+        private final long size;
+        private long lastModified;
+        private final String hash;
+        private final boolean persistent;
+        private String packagesKey;
+        private List<String> serviceClasses;
+
+        private Entry(final String path, final long size, final long lastModified, final String hash, final boolean persistent)
+        {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.persistent = persistent;
+        }
+
+        private void write(final Writer out) throws IOException
+        {
+            out.write(String.join(SEPARATOR, ENTRY, path, Long.toString(size), Long.toString(lastModified), hash,
+                    serviceClasses != null ? packagesKey : ""));
+            out.write('\n');
+            if (serviceClasses != null)
+            {
+                for (final String serviceClass : serviceClasses)
+                {
+                    out.write(SERVICE + SEPARATOR + serviceClass + '\n');
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependencies between discovered services, derived from their {@code @Inject} fields and constructor parameters.
+ * An edge goes from a service to every other discovered service assignable to one of its injection points.
+ * <p>
+ * Edges that would close a cycle are dropped (with a warning) so the graph can always be ordered.
+ */
+class ServiceGraph
+{
+    private static final Logger logger = LoggerFactory.getLogger(ServiceGraph.class);
+
+    private final List<Object> startOrder = new ArrayList<>();
+    private final Map<Object, List<Object>> dependencies = new IdentityHashMap<>();
+    private final Map<Object, List<Object>> dependents = new IdentityHashMap<>();
+
+    ServiceGraph(final List<Object> services)
+    {
+        final Map<Object, List<Object>> declaredDependencies = new IdentityHashMap<>();
+        for (final Object service : services)
+        {
+            declaredDependencies.put(service, findDependencies(service, services));
+            dependencies.put(service, new ArrayList<>());
+            dependents.put(service, new ArrayList<>());
+        }
+
+        // Depth first so dependencies come before their dependents, ties keep discovery order
+        final Map<Object, Boolean> visiting = new IdentityHashMap<>();
+        for (final Object service : services)
+        {
+            visit(service, declaredDependencies, visiting);
+        }
+    }
+
+    private void visit(final Object service, final Map<Object, List<Object>> declaredDependencies, final Map<Object, Boolean> visiting)
+    {
+        if (visiting.containsKey(service))
+        {
+            return;
+        }
+
+        visiting.put(service, Boolean.TRUE);
+        for (final Object dependency : declaredDependencies.get(service))
+        {
+            if (Boolean.TRUE.equals(visiting.get(dependency)))
+            {
+                logger.warn("Ignoring circular dependency from {} to {} when ordering services.",
+                        service.getClass().getName(), dependency.getClass().getName());
+                continue;
+            }
+            visit(dependency, declaredDependencies, visiting);
+            dependencies.get(service).add(dependency);
+            dependents.get(dependency).add(service);
+        }
+        visiting.put(service, Boolean.FALSE);
+        startOrder.add(service);
+    }
+
+    private static List<Object> findDependencies(final Object service, final List<Object> services)
+    {
+        final List<Class<?>> injectedTypes = new ArrayList<>();
+        for (Class<?> classType = service.getClass(); classType != null && classType != Object.class; classType = classType.getSuperclass())
+        {
+            for (final Field field : classType.getDeclaredFields())
+            {
+                if (field.isAnnotationPresent(Inject.class))
+                {
+                    addInjectedType(field.getGenericType(), injectedTypes);
+                }
+            }
+            for (final Constructor<?> constructor : classType.getDeclaredConstructors())
+            {
+                if (constructor.isAnnotationPresent(Inject.class))
+                {
+                    for (final Type parameterType : constructor.getGenericParameterTypes())
+                    {
+                        addInjectedType(parameterType, injectedTypes);
+                    }
+                }
+            }
+        }
+
+        final List<Object> serviceDependencies = new ArrayList<>();
+        for (final Object other : services)
+        {
+            if (other != service && injectedTypes.stream().anyMatch(type -> type.isInstance(other)))
+            {
+                serviceDependencies.add(other);
+            }
+        }
+        return serviceDependencies;
+    }
+
+    private static void addInjectedType(final Type type, final List<Class<?>> injectedTypes)
+    {
+        if (type instanceof Class)
+        {
+            injectedTypes.add((Class<?>) type);
+        }
+        else if (type instanceof ParameterizedType)
+        {
+            final Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            // Providers are resolved on demand, they don't need the service to be started first
+            if (!Provider.class.isAssignableFrom(rawType))
+            {
+                injectedTypes.add(rawType);
+            }
+        }
+    }
+
+    /**
+     * Every service, after all of its dependencies.
+     */
+    public List<Object> getStartOrder()
+    {
+        return Collections.unmodifiableList(startOrder);
+    }
+
+    public List<Object> getDependencies(final Object service)
+    {
+        return Collections.unmodifiableList(dependencies.get(service));
+    }
+
+    public List<Object> getDependents(final Object service)
+    {
+        return Collections.unmodifiableList(dependents.get(service));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the build-time service indexes written by {@link cloud.orbit.container.processor.ServiceIndexProcessor}.
+ * <p>
+ * Each module writes its own index file in {@link #DIRECTORY}, so that the indexes of every module survive being
+ * merged into a single jar, such as a shaded one. The single {@link #LOCATION} older builds wrote is read as well.
+ */
+public class ServiceIndex
+{
+    public static final String DIRECTORY = "META-INF/orbit/";
+    public static final String LOCATION = DIRECTORY + "container-services.idx";
+
+    private static final String PREFIX = DIRECTORY + "container-services-";
+    private static final String SUFFIX = ".idx";
+
+    private ServiceIndex()
+    {
+
+    }
+
+    /**
+     * The index file of a module.
+     */
+    public static String location(final String moduleName)
+    {
+        return PREFIX + moduleName + SUFFIX;
+    }
+
+    static boolean isIndex(final String resourceName)
+    {
+        return LOCATION.equals(resourceName)
+                || (resourceName.startsWith(PREFIX) && resourceName.endsWith(SUFFIX) && resourceName.indexOf('/', PREFIX.length()) < 0);
+    }
+
+    /**
+     * Merges every index visible to the class loader. Indexes are found by listing {@link #DIRECTORY} in the
+     * directories and jars of the class loader, other locations only have their {@link #LOCATION} read.
+     *
+     * @return the indexed class names, or null if no index was found
+     */
+    public static List<String> read(final ClassLoader classLoader) throws IOException
+    {
+        final Set<URL> indexes = new LinkedHashSet<>();
+        final Enumeration<URL> directories = classLoader.getResources(DIRECTORY);
+        while (directories.hasMoreElements())
+        {
+            final URL directory = directories.nextElement();
+            for (final String name : ClassPathEntry.getResourceNames(directory, DIRECTORY))
+            {
+                if (isIndex(name))
+                {
+                    indexes.add(new URL(directory, name.substring(DIRECTORY.length())));
+                }
+            }
+        }
+        indexes.addAll(Collections.list(classLoader.getResources(LOCATION)));
+        if (indexes.isEmpty())
+        {
+            return null;
+        }
+
+        final Set<String> classNames = new LinkedHashSet<>();
+        for (final URL index : indexes)
+        {
+            try (InputStream in = index.openStream())
+            {
+                classNames.addAll(parse(in));
+            }
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    /**
+     * @return the class names indexed in the entry, or null if it has no index
+     */
+    static List<String> read(final ClassPathEntry classPathEntry) throws IOException
+    {
+        final List<String> indexes = classPathEntry.getResourceNames(DIRECTORY);
+        indexes.removeIf(name -> !isIndex(name));
+        if (indexes.isEmpty())
+        {
+            return null;
+        }
+
+        final Set<String> classNames = new LinkedHashSet<>();
+        for (final String index : indexes)
+        {
+            try (InputStream in = classPathEntry.openResource(index))
+            {
+                classNames.addAll(parse(in));
+            }
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    public static List<String> parse(final InputStream in) throws IOException
+    {
+        final List<String> classNames = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+            {
+                classNames.add(line);
+            }
+        }
+        return classNames;
+    }
+}
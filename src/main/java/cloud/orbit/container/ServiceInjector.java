@@ -0,0 +1,216 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+import org.jvnet.hk2.annotations.Optional;
+
+import cloud.orbit.exception.UncheckedException;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Injects the {@code @Inject} fields of one class. When every injection point is an unqualified field whose
+ * service is a singleton, the services are resolved once and written straight into the fields; any other shape
+ * (qualifiers, providers, optional or method injection, per-lookup services, async services not ready yet) goes
+ * through {@link ServiceLocator#inject(Object)} as before.
+ */
+class ServiceInjector
+{
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final ServiceLocator serviceLocator;
+    private final boolean delegate;
+    private final boolean cacheable;
+    private final MethodHandle[] setters;
+    private final Object[] values;
+
+    private ServiceInjector(final ServiceLocator serviceLocator, final boolean delegate, final boolean cacheable,
+                            final List<MethodHandle> setters, final List<Object> values)
+    {
+        this.serviceLocator = serviceLocator;
+        this.delegate = delegate;
+        this.cacheable = cacheable;
+        this.setters = setters.toArray(new MethodHandle[setters.size()]);
+        this.values = values.toArray();
+    }
+
+    /**
+     * @param isShared tells whether a per-lookup descriptor always yields the same instance, as is the case for
+     *                 constants. Nothing is created for the descriptors it rejects.
+     * @param isAsyncReady tells whether the {@link AsyncService} of a type can be resolved without waiting.
+     */
+    static ServiceInjector create(final Class<?> type, final ServiceLocator serviceLocator, final Predicate<ActiveDescriptor<?>> isShared,
+                                  final Predicate<Class<?>> isAsyncReady)
+    {
+        final List<MethodHandle> setters = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        for (Class<?> classType = type; classType != null && classType != Object.class; classType = classType.getSuperclass())
+        {
+            for (final Method method : classType.getDeclaredMethods())
+            {
+                if (method.isAnnotationPresent(Inject.class))
+                {
+                    return delegating(serviceLocator);
+                }
+            }
+            for (final Field field : classType.getDeclaredFields())
+            {
+                if (!field.isAnnotationPresent(Inject.class))
+                {
+                    continue;
+                }
+                if (!isDirectlyInjectable(field))
+                {
+                    return delegating(serviceLocator);
+                }
+
+                final ServiceHandle<?> handle = serviceLocator.getServiceHandle(field.getGenericType());
+                if (handle == null)
+                {
+                    return delegating(serviceLocator);
+                }
+                final ActiveDescriptor<?> descriptor = handle.getActiveDescriptor();
+                // Resolving an async service early would wait for it, try again once it is ready
+                if (descriptor.getMetadata().containsKey(AsyncService.METADATA_KEY) && !isAsyncReady.test(field.getType()))
+                {
+                    return new ServiceInjector(serviceLocator, true, false, new ArrayList<>(), new ArrayList<>());
+                }
+                // Other scopes, such as the actor scope, depend on the object being injected, and a per-lookup
+                // service that isn't shared would be created here only to be thrown away
+                final String scope = descriptor.getScope();
+                final boolean shared = Singleton.class.getName().equals(scope)
+                        || (PerLookup.class.getName().equals(scope) && isShared.test(descriptor));
+                if (!shared)
+                {
+                    return delegating(serviceLocator);
+                }
+                final Object value = handle.getService();
+                if (value == null)
+                {
+                    return delegating(serviceLocator);
+                }
+
+                setters.add(setter(field));
+                values.add(value);
+            }
+        }
+        return new ServiceInjector(serviceLocator, false, true, setters, values);
+    }
+
+    private static ServiceInjector delegating(final ServiceLocator serviceLocator)
+    {
+        return new ServiceInjector(serviceLocator, true, true, new ArrayList<>(), new ArrayList<>());
+    }
+
+    private static boolean isDirectlyInjectable(final Field field)
+    {
+        final int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers)
+                && !Modifier.isFinal(modifiers)
+                && isPlainType(field.getGenericType())
+                && !Provider.class.isAssignableFrom(field.getType())
+                && !field.isAnnotationPresent(Optional.class)
+                && ReflectionHelper.getQualifierAnnotations(field).isEmpty();
+    }
+
+    /**
+     * A class, or a parameterized class whose arguments are classes, such as {@code Task<T>}.
+     */
+    private static boolean isPlainType(final Type type)
+    {
+        return type instanceof Class
+                || (type instanceof ParameterizedType
+                && Arrays.stream(((ParameterizedType) type).getActualTypeArguments()).allMatch(argument -> argument instanceof Class));
+    }
+
+    /**
+     * False when the injector may do better later and should not be kept.
+     */
+    public boolean isCacheable()
+    {
+        return cacheable;
+    }
+
+    private static MethodHandle setter(final Field field)
+    {
+        field.setAccessible(true);
+        try
+        {
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new UncheckedException(e);
+        }
+    }
+
+    public void inject(final Object o)
+    {
+        if (delegate)
+        {
+            serviceLocator.inject(o);
+            return;
+        }
+        try
+        {
+            for (int i = 0; i < setters.length; i++)
+            {
+                setters[i].invokeExact(o, values[i]);
+            }
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new UncheckedException(e);
+        }
+    }
+}
@@ -36,9 +36,20 @@ import java.util.List;
 
 /**
  * Created by joe@bioware.com on 2016-02-16.
+ * <p>
+ * Addons are registered through {@code META-INF/services/cloud.orbit.container.addons.Addon}
+ * and can live in any package.
  */
 public interface Addon
 {
+    /**
+     * Addons are configured in ascending priority order, addons with the same priority keep their registration order.
+     */
+    public default int getPriority()
+    {
+        return 0;
+    }
+
     public default List<String> getPackagesToScan()
     {
         return new ArrayList<>();
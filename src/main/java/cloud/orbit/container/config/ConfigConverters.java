@@ -0,0 +1,248 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container.config;
+
+import cloud.orbit.exception.UncheckedException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The converters used by {@link ContainerConfig#getAs(String, Class)} and {@code @Config} injection. Built in are
+ * String, Integer, Long, Boolean, Double (and their primitives), Duration (ISO-8601 or a number of milliseconds),
+ * enums (by constant name), List and Set. Other List and Set types, such as ArrayList or HashSet, get a converter
+ * building that type when one can be instantiated.
+ * <p>
+ * {@code @Config} fields pick their converter the first time their class is injected, so converters should be
+ * registered before that.
+ */
+public final class ConfigConverters
+{
+    private static final Map<Class<?>, ConfigConverter<?>> converters = new ConcurrentHashMap<>();
+
+    static
+    {
+        register(String.class, Object::toString);
+
+        final ConfigConverter<Integer> integerConverter = value -> Integer.valueOf(value.toString());
+        register(Integer.class, integerConverter);
+        register(int.class, integerConverter);
+
+        final ConfigConverter<Long> longConverter = value -> Long.valueOf(value.toString());
+        register(Long.class, longConverter);
+        register(long.class, longConverter);
+
+        final ConfigConverter<Boolean> booleanConverter = value -> Boolean.valueOf(value.toString());
+        register(Boolean.class, booleanConverter);
+        register(boolean.class, booleanConverter);
+
+        final ConfigConverter<Double> doubleConverter = value -> value instanceof Number
+                ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+        register(Double.class, doubleConverter);
+        register(double.class, doubleConverter);
+
+        register(Duration.class, value ->
+        {
+            if (value instanceof Number)
+            {
+                return Duration.ofMillis(((Number) value).longValue());
+            }
+            final String string = value.toString().trim();
+            return string.chars().allMatch(Character::isDigit) && !string.isEmpty()
+                    ? Duration.ofMillis(Long.parseLong(string)) : Duration.parse(string);
+        });
+
+        registerCollections();
+    }
+
+    private ConfigConverters()
+    {
+
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void registerCollections()
+    {
+        register(List.class, new ConfigConverter<List>()
+        {
+            @Override
+            public List convert(final Object value)
+            {
+                return value instanceof List ? (List) value
+                        : value instanceof Collection ? new ArrayList<>((Collection<?>) value) : Collections.singletonList(value);
+            }
+
+            @Override
+            public boolean isShareable()
+            {
+                return false;
+            }
+        });
+
+        register(Set.class, new ConfigConverter<Set>()
+        {
+            @Override
+            public Set convert(final Object value)
+            {
+                return value instanceof Set ? (Set) value
+                        : value instanceof Collection ? new LinkedHashSet<>((Collection<?>) value) : Collections.singleton(value);
+            }
+
+            @Override
+            public boolean isShareable()
+            {
+                return false;
+            }
+        });
+    }
+
+    public static <T> void register(final Class<T> type, final ConfigConverter<? extends T> converter)
+    {
+        converters.put(type, converter);
+    }
+
+    /**
+     * @return the converter for the type, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ConfigConverter<T> forType(final Class<T> type)
+    {
+        ConfigConverter<?> converter = converters.get(type);
+        if (converter == null && type.isEnum())
+        {
+            converter = converters.computeIfAbsent(type, ConfigConverters::enumConverter);
+        }
+        else if (converter == null && (List.class.isAssignableFrom(type) || Set.class.isAssignableFrom(type)))
+        {
+            converter = converters.computeIfAbsent(type, ConfigConverters::collectionConverter);
+        }
+        return (ConfigConverter<T>) converter;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ConfigConverter<?> enumConverter(final Class<?> enumType)
+    {
+        return value -> Enum.valueOf((Class<Enum>) enumType, value.toString());
+    }
+
+    /**
+     * Values already of the type are kept, others are copied into a new collection of the type.
+     *
+     * @return null if the type can't be instantiated
+     */
+    private static ConfigConverter<?> collectionConverter(final Class<?> collectionType)
+    {
+        final Supplier<Collection<Object>> factory = collectionFactory(collectionType);
+        if (factory == null)
+        {
+            return null;
+        }
+
+        return new ConfigConverter<Object>()
+        {
+            @Override
+            public Object convert(final Object value)
+            {
+                if (collectionType.isInstance(value))
+                {
+                    return value;
+                }
+                final Collection<Object> collection = factory.get();
+                if (value instanceof Collection)
+                {
+                    collection.addAll((Collection<?>) value);
+                }
+                else
+                {
+                    collection.add(value);
+                }
+                return collection;
+            }
+
+            @Override
+            public boolean isShareable()
+            {
+                return false;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Collection<Object>> collectionFactory(final Class<?> collectionType)
+    {
+        if (collectionType.isAssignableFrom(ArrayList.class))
+        {
+            return ArrayList::new;
+        }
+        if (collectionType.isAssignableFrom(LinkedHashSet.class))
+        {
+            return LinkedHashSet::new;
+        }
+        if (collectionType.isAssignableFrom(TreeSet.class))
+        {
+            return TreeSet::new;
+        }
+        if (collectionType.isInterface() || Modifier.isAbstract(collectionType.getModifiers()))
+        {
+            return null;
+        }
+
+        final Constructor<?> constructor;
+        try
+        {
+            constructor = collectionType.getConstructor();
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        return () ->
+        {
+            try
+            {
+                return (Collection<Object>) constructor.newInstance();
+            }
+            catch (ReflectiveOperationException e)
+            {
+                throw new UncheckedException("Unable to create a " + collectionType.getName(), e);
+            }
+        };
+    }
+}
@@ -65,4 +65,25 @@ public interface ContainerConfig
     Map<String, Object> getAll();
 
     Map<String, Object> getPrefixedValues(String collectionPrefix);
+
+    /**
+     * Converts the value with the converter {@link ConfigConverters} has for the type.
+     *
+     * @throws IllegalArgumentException if there is no converter for the type
+     */
+    default <T> T getAs(String key, Class<T> type)
+    {
+        final ConfigConverter<T> converter = ConfigConverters.forType(type);
+        if (converter == null)
+        {
+            throw new IllegalArgumentException("No config converter for " + type.getName());
+        }
+        return getAs(key, converter);
+    }
+
+    default <T> T getAs(String key, ConfigConverter<T> converter)
+    {
+        final Object value = getAll().get(key);
+        return value != null ? converter.convert(value) : null;
+    }
 }
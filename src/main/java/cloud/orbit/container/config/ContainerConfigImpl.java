@@ -28,33 +28,96 @@
 
 package cloud.orbit.container.config;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
+import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-
-public class ContainerConfigImpl extends Properties implements ContainerConfig
+/**
+ * Reads go to an immutable snapshot published through a volatile field, so they never lock. Writes copy the
+ * snapshot, apply their changes and publish the copy, holding the config's monitor so concurrent writes don't lose
+ * each other's changes.
+ * <p>
+ * {@link #getAll()} and {@link #getPrefixedValues(String)} return read-only views of the snapshot current at the
+ * time of the call, they don't copy it and don't see later writes.
+ */
+public class ContainerConfigImpl implements ContainerConfig, Serializable
 {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
-    @Override
-    public Map<String, Object> getPrefixedValues(final String collectionPrefix)
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+    private static final class Snapshot implements Serializable
     {
-        final String actualPrefix = collectionPrefix + ".";
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, Object> values;
+        private final Map<String, Object> view;
+        private transient volatile NavigableMap<String, Object> sortedValues;
+        private transient volatile Map<ConfigConverter<?>, Map<String, Object>> convertedValues;
+
+        private Snapshot(final Map<String, Object> values)
+        {
+            this.values = values;
+            this.view = Collections.unmodifiableMap(values);
+        }
 
-        final Map<String, Object> res = new LinkedHashMap<>();
-        for (final Entry<String, Object> e : getAll().entrySet())
+        /**
+         * Built on the first prefix query, most snapshots never get one.
+         */
+        private NavigableMap<String, Object> getSortedValues()
         {
-            if (e.getKey().startsWith(actualPrefix))
+            NavigableMap<String, Object> sorted = sortedValues;
+            if (sorted == null)
             {
-                res.put(e.getKey(), e.getValue());
+                sorted = Collections.unmodifiableNavigableMap(new TreeMap<>(values));
+                sortedValues = sorted;
             }
+            return sorted;
         }
-        return res;
+
+        /**
+         * Values already converted by the converter, they stay valid as long as the snapshot does.
+         */
+        private Map<String, Object> getConvertedValues(final ConfigConverter<?> converter)
+        {
+            Map<ConfigConverter<?>, Map<String, Object>> converted = convertedValues;
+            if (converted == null)
+            {
+                synchronized (this)
+                {
+                    converted = convertedValues;
+                    if (converted == null)
+                    {
+                        converted = new ConcurrentHashMap<>();
+                        convertedValues = converted;
+                    }
+                }
+            }
+
+            final Map<String, Object> values = converted.get(converter);
+            return values != null ? values : converted.computeIfAbsent(converter, k -> new ConcurrentHashMap<>());
+        }
+    }
+
+    private Object get(final String key)
+    {
+        return snapshot.values.get(key);
+    }
+
+    @Override
+    public Map<String, Object> getPrefixedValues(final String collectionPrefix)
+    {
+        // Every key starting with "prefix." sorts between "prefix." and "prefix/", '/' follows '.'
+        return snapshot.getSortedValues().subMap(collectionPrefix + ".", true, collectionPrefix + "/", false);
     }
 
     @Override
@@ -79,6 +142,38 @@ public class ContainerConfigImpl extends Properties implements ContainerConfig
         return (o != null && classType.isAssignableFrom(o.getClass()) ? (T) o : null);
     }
 
+    /**
+     * Shareable converted values are kept with the snapshot, reading a key again returns the same value without
+     * converting it again.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAs(final String key, final ConfigConverter<T> converter)
+    {
+        final Snapshot current = snapshot;
+        final Object value = current.values.get(key);
+        if (value == null)
+        {
+            return null;
+        }
+        if (!converter.isShareable())
+        {
+            return converter.convert(value);
+        }
+
+        final Map<String, Object> convertedValues = current.getConvertedValues(converter);
+        Object converted = convertedValues.get(key);
+        if (converted == null)
+        {
+            converted = converter.convert(value);
+            if (converted != null)
+            {
+                convertedValues.putIfAbsent(key, converted);
+            }
+        }
+        return (T) converted;
+    }
+
     @Override
     public String getAsString(final String key)
     {
@@ -100,13 +195,7 @@ public class ContainerConfigImpl extends Properties implements ContainerConfig
     @Override
     public Integer getAsInt(final String key)
     {
-        Integer value = null;
-        final String string = this.getAsString(key);
-        if (string != null)
-        {
-            value = Integer.valueOf(string);
-        }
-        return value;
+        return getAs(key, Integer.class);
     }
 
     @Override
@@ -123,13 +212,7 @@ public class ContainerConfigImpl extends Properties implements ContainerConfig
     @Override
     public Long getAsLong(final String key)
     {
-        Long value = null;
-        final String string = this.getAsString(key);
-        if (string != null)
-        {
-            value = Long.valueOf(string);
-        }
-        return value;
+        return getAs(key, Long.class);
     }
 
     @Override
@@ -146,13 +229,7 @@ public class ContainerConfigImpl extends Properties implements ContainerConfig
     @Override
     public Boolean getAsBoolean(final String key)
     {
-        Boolean value = null;
-        final String string = this.getAsString(key);
-        if (string != null)
-        {
-            value = Boolean.valueOf(string);
-        }
-        return value;
+        return getAs(key, Boolean.class);
     }
 
     @Override
@@ -169,25 +246,81 @@ public class ContainerConfigImpl extends Properties implements ContainerConfig
     @Override
     public void put(final String key, final String value)
     {
-        super.put(key, value);
+        putAll(Collections.singletonMap(key, value));
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void putAll(final ContainerConfig other)
     {
-        super.putAll((Map) other);
+        putAll(other.getAll());
     }
 
     @Override
-    public Map<String, Object> getAll()
+    public void putAll(final Map<?, ?> other)
     {
-        final Map<String, Object> result = new HashMap<>();
-        for (final Entry<Object, Object> entry : entrySet())
+        synchronized (this)
         {
-            result.put(entry.getKey().toString(), entry.getValue());
+            final Map<String, Object> values = new HashMap<>(snapshot.values);
+            for (final Entry<?, ?> entry : other.entrySet())
+            {
+                // Nulls were never accepted, as with the Properties this used to be
+                values.put(Objects.requireNonNull(entry.getKey()).toString(), Objects.requireNonNull(entry.getValue()));
+            }
+            snapshot = new Snapshot(values);
         }
+    }
 
-        return result;
+    /**
+     * Moves the values read from a source, such as the config files, from one version to the next at once, readers
+     * see either all of the old values or all of the new ones. Keys no longer holding their previous value were put
+     * since and are left alone.
+     *
+     * @return the keys that were added, changed or removed
+     */
+    public Set<String> update(final Map<String, ?> previousValues, final Map<String, ?> newValues)
+    {
+        final Set<String> keys = new HashSet<>(previousValues.keySet());
+        keys.addAll(newValues.keySet());
+
+        synchronized (this)
+        {
+            final Map<String, Object> values = new HashMap<>(snapshot.values);
+            final Set<String> changedKeys = new HashSet<>();
+            for (final String key : keys)
+            {
+                final Object previousValue = previousValues.get(key);
+                final Object newValue = newValues.get(key);
+                if (Objects.equals(previousValue, newValue) || !Objects.equals(values.get(key), previousValue))
+                {
+                    continue;
+                }
+                if (newValue != null)
+                {
+                    values.put(key, newValue);
+                }
+                else
+                {
+                    values.remove(key);
+                }
+                changedKeys.add(key);
+            }
+            if (!changedKeys.isEmpty())
+            {
+                snapshot = new Snapshot(values);
+            }
+            return changedKeys;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getAll()
+    {
+        return snapshot.view;
+    }
+
+    @Override
+    public String toString()
+    {
+        return snapshot.values.toString();
     }
 }
@@ -34,13 +34,17 @@ import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.introspector.BeanAccess;
 
 import cloud.orbit.exception.UncheckedException;
-import cloud.orbit.util.IOUtils;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -57,11 +61,42 @@ public class YAMLConfigReader
             "/opt/orbit/orbit.yaml",
             "/etc/orbit/orbit.yaml",
             "/etc/opt/orbit/orbit.yaml",
-            System.getProperty("user.home") + "/orbit/orbit.yaml",
-            System.getProperty("orbit.configFile", "null")
+            System.getProperty("user.home") + "/orbit/orbit.yaml"
     );
 
+    private static List<String> getConfigPaths()
+    {
+        final List<String> paths = new ArrayList<>(CONFIG_PATHS);
+        // Read on every call, the file can be chosen after this class was loaded
+        final String configFile = System.getProperty("orbit.configFile");
+        if(configFile != null)
+        {
+            paths.add(configFile);
+        }
+        return paths;
+    }
+
+    /**
+     * The files {@link #readConfig()} mounts over the classpath config, whether they exist or not.
+     */
+    public static List<Path> getConfigFiles()
+    {
+        final List<Path> files = new ArrayList<>();
+        getConfigPaths().forEach(path -> files.add(Paths.get(path).toAbsolutePath()));
+        return files;
+    }
+
     public static ContainerConfig readConfig()
+    {
+        final ContainerConfig newConfig = readDefaultConfig();
+        newConfig.putAll(readConfigFiles(false));
+        return newConfig;
+    }
+
+    /**
+     * The system properties and the classpath config, without the files of {@link #getConfigFiles()}.
+     */
+    public static ContainerConfig readDefaultConfig()
     {
         ContainerConfig newConfig = new ContainerConfigImpl();
         newConfig.putAll(System.getProperties());
@@ -85,79 +120,198 @@ public class YAMLConfigReader
 
         }
 
+        return newConfig;
+    }
+
+    /**
+     * The values of the files of {@link #getConfigFiles()} that exist, later files overriding earlier ones.
+     *
+     * @param strict whether a file that exists but can't be read or parsed fails the read, otherwise it is skipped
+     * @throws UncheckedException in strict mode, if a file can't be read
+     */
+    public static Map<String, Object> readConfigFiles(final boolean strict)
+    {
+        final Map<String, Object> values = new LinkedHashMap<>();
+
         // Mount overload configs
-        CONFIG_PATHS.forEach(path ->
+        getConfigPaths().forEach(path ->
         {
-            if(path != null)
+            if(!Files.exists(Paths.get(path)))
             {
-                try
-                {
-                    FileInputStream inputStream = new FileInputStream(path);
-                    Map<String, Object> props = readProperties(inputStream);
-                    newConfig.putAll(props);
-                    logger.info("Mounted config: {}", path);
-                }
-                catch(Exception e)
+                return;
+            }
+            try
+            {
+                FileInputStream inputStream = new FileInputStream(path);
+                Map<String, Object> props = readProperties(inputStream);
+                values.putAll(props);
+                logger.info("Mounted config: {}", path);
+            }
+            catch(Exception e)
+            {
+                if(strict)
                 {
-
+                    throw new UncheckedException("Unable to read config file: " + path, e);
                 }
+                logger.warn("Ignoring config file {}, it can't be read.", path, e);
             }
         });
 
-
-        return newConfig;
+        return values;
     }
 
     @SuppressWarnings("unchecked")
     private static Map<String, Object> readProperties(final InputStream in) throws IOException
     {
-        String inputStreamString = IOUtils.toString(new InputStreamReader(in, "UTF-8"));
-        Yaml yaml = new Yaml();
-        yaml.setBeanAccess(BeanAccess.FIELD);
-        final Iterable<Object> iter = yaml.loadAll(substituteVariables(inputStreamString));
+        try (Reader reader = new VariableSubstitutingReader(new InputStreamReader(in, "UTF-8")))
+        {
+            Yaml yaml = new Yaml();
+            yaml.setBeanAccess(BeanAccess.FIELD);
+            final Iterable<Object> iter = yaml.loadAll(reader);
 
-        final Map<String, Object> newProperties = new LinkedHashMap<>();
+            final Map<String, Object> newProperties = new LinkedHashMap<>();
 
-        iter.forEach(item -> {
-            final Map<String, Object> section = (Map<String, Object>) item;
-            newProperties.putAll(section);
-        });
+            iter.forEach(item -> {
+                final Map<String, Object> section = (Map<String, Object>) item;
+                newProperties.putAll(section);
+            });
 
-        return newProperties;
+            return newProperties;
+        }
     }
 
-    private static String substituteVariables(String input)
+    /**
+     * Replaces ${name} and ${name:default} with system properties or environment variables while the file is read,
+     * in a single pass and without holding the whole file. Substituted values are not scanned again.
+     */
+    static final class VariableSubstitutingReader extends Reader
     {
-        StringBuilder sb = new StringBuilder(input);
-        int endIndex = -1;
-        int startIndex = sb.indexOf("${");
-        while (startIndex > -1)
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private int pushedBack = -1;
+        private int line = 1;
+
+        private final StringBuilder variable = new StringBuilder();
+        private String replacement;
+        private int replacementPosition;
+
+        VariableSubstitutingReader(final Reader in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException
         {
-            endIndex = sb.indexOf("}", startIndex);
-            if (endIndex == -1)
+            if (len == 0)
             {
-                throw new UncheckedException("Invalid config file. Could not find a closing curly bracket '}' for variable at line:" + sb.substring(0, startIndex).split("\n").length);
+                return 0;
             }
 
-            String propertyString = sb.substring(startIndex + 2, endIndex);
-            if (propertyString.indexOf('\n') > -1)
+            int count = 0;
+            while (count < len)
             {
-                throw new UncheckedException("Invalid config file. File contains multi-line variable, possibly missing curly bracket '}' at line: " +  sb.substring(0, startIndex).split("\n").length);
+                if (replacement != null)
+                {
+                    final int n = Math.min(len - count, replacement.length() - replacementPosition);
+                    replacement.getChars(replacementPosition, replacementPosition + n, cbuf, off + count);
+                    count += n;
+                    replacementPosition += n;
+                    if (replacementPosition == replacement.length())
+                    {
+                        replacement = null;
+                    }
+                    continue;
+                }
+
+                final int c = next();
+                if (c == -1)
+                {
+                    break;
+                }
+                if (c == '$')
+                {
+                    final int following = next();
+                    if (following == '{')
+                    {
+                        replacement = substitute();
+                        replacementPosition = 0;
+                        continue;
+                    }
+                    pushedBack = following;
+                }
+                cbuf[off + count++] = (char) c;
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        private String substitute() throws IOException
+        {
+            final int startLine = line;
+            boolean multiLine = false;
+            variable.setLength(0);
+
+            int c;
+            while ((c = next()) != '}')
+            {
+                if (c == -1)
+                {
+                    throw new UncheckedException("Invalid config file. Could not find a closing curly bracket '}' for variable at line:" + startLine);
+                }
+                if (c == '\n')
+                {
+                    multiLine = true;
+                }
+                variable.append((char) c);
             }
 
-            String variableReplacement = getProperty(propertyString);
-            if (variableReplacement != null)
+            if (multiLine)
             {
-                sb.replace(startIndex, endIndex + 1, variableReplacement);
-                endIndex = startIndex + variableReplacement.length();
-            } else
+                throw new UncheckedException("Invalid config file. File contains multi-line variable, possibly missing curly bracket '}' at line: " +  startLine);
+            }
+
+            final String propertyString = variable.toString();
+            final String variableReplacement = getProperty(propertyString);
+            if (variableReplacement == null)
             {
                 throw new UncheckedException("Could not find a value for property '" + propertyString + "'");
             }
-            startIndex = sb.indexOf("${", endIndex);
+            return variableReplacement;
+        }
+
+        private int next() throws IOException
+        {
+            if (pushedBack != -1)
+            {
+                final int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+            if (position == limit)
+            {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0)
+                {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            final char c = buffer[position++];
+            if (c == '\n')
+            {
+                line++;
+            }
+            return c;
         }
 
-        return sb.toString();
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
     }
 
     private static String getProperty(String propertyString)
@@ -0,0 +1,276 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container.processor;
+
+import cloud.orbit.container.ServiceIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the {@link ServiceIndex} of the module at compile time so the container does not have to crawl the classpath.
+ * The index file is named after the orbit.container.moduleName processor option, or else after the output directory,
+ * so modules merged into one jar keep their own index.
+ * Only classes the container itself would register are indexed: annotated (services and actor scoped classes) or
+ * actor top level classes, and such public member classes whose enclosing classes are not services themselves.
+ * <p>
+ * Actors need not be annotated, so every root element is looked at, not only the annotated ones.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ServiceIndexProcessor.MODULE_NAME_OPTION)
+public class ServiceIndexProcessor extends AbstractProcessor
+{
+    static final String SINGLETON_ANNOTATION = "javax.inject.Singleton";
+    static final String SERVICE_ANNOTATION = "org.jvnet.hk2.annotations.Service";
+    static final String ACTOR_SCOPED_ANNOTATION = "cloud.orbit.container.ActorScoped";
+    static final String ACTOR_CLASS = "cloud.orbit.actors.runtime.AbstractActor";
+    static final String MODULE_NAME_OPTION = "orbit.container.moduleName";
+
+    private final Set<String> indexedClasses = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver())
+        {
+            writeIndex();
+            return false;
+        }
+
+        for (final TypeElement annotation : annotations)
+        {
+            final String annotationName = annotation.getQualifiedName().toString();
+            if (!SINGLETON_ANNOTATION.equals(annotationName) && !SERVICE_ANNOTATION.equals(annotationName)
+                    && !ACTOR_SCOPED_ANNOTATION.equals(annotationName))
+            {
+                continue;
+            }
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation))
+            {
+                if (isDiscoverable(element))
+                {
+                    indexedClasses.add(binaryName((TypeElement) element));
+                }
+            }
+        }
+
+        for (final Element element : roundEnv.getRootElements())
+        {
+            addActorClasses(element);
+        }
+        return false;
+    }
+
+    private void addActorClasses(final Element element)
+    {
+        if (!element.getKind().isClass())
+        {
+            return;
+        }
+        if (isActor(element) && isDiscoverable(element))
+        {
+            indexedClasses.add(binaryName((TypeElement) element));
+        }
+        for (final Element enclosed : element.getEnclosedElements())
+        {
+            addActorClasses(enclosed);
+        }
+    }
+
+    private boolean isActor(final Element element)
+    {
+        final TypeElement actorClass = processingEnv.getElementUtils().getTypeElement(ACTOR_CLASS);
+        if (actorClass == null || !element.getKind().isClass() || element.equals(actorClass))
+        {
+            return false;
+        }
+        final Types types = processingEnv.getTypeUtils();
+        return types.isSubtype(types.erasure(element.asType()), types.erasure(actorClass.asType()));
+    }
+
+    private boolean isDiscoverable(final Element element)
+    {
+        if (!element.getKind().isClass() && !element.getKind().isInterface())
+        {
+            return false;
+        }
+
+        // Mirror Container.processClass: it only recurses into the public member classes of non service classes
+        Element current = element;
+        while (current.getEnclosingElement().getKind() != ElementKind.PACKAGE)
+        {
+            final Element enclosing = current.getEnclosingElement();
+            if (!current.getModifiers().contains(Modifier.PUBLIC)
+                    || !(enclosing.getKind().isClass() || enclosing.getKind().isInterface())
+                    || isService(enclosing))
+            {
+                return false;
+            }
+            current = enclosing;
+        }
+        return true;
+    }
+
+    private boolean isService(final Element element)
+    {
+        return element.getAnnotationMirrors().stream()
+                .map(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())
+                .anyMatch(name -> SINGLETON_ANNOTATION.equals(name) || SERVICE_ANNOTATION.equals(name));
+    }
+
+    private boolean isActorScoped(final Element element)
+    {
+        return element.getAnnotationMirrors().stream()
+                .map(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())
+                .anyMatch(ACTOR_SCOPED_ANNOTATION::equals);
+    }
+
+    private String binaryName(final TypeElement element)
+    {
+        return processingEnv.getElementUtils().getBinaryName(element).toString();
+    }
+
+    /**
+     * The same for every compilation of a module, different between modules.
+     */
+    private String indexLocation() throws IOException
+    {
+        final String moduleName = processingEnv.getOptions().get(MODULE_NAME_OPTION);
+        if (moduleName != null && moduleName.matches("[\\w.-]+"))
+        {
+            return ServiceIndex.location(moduleName);
+        }
+        if (moduleName != null)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Ignoring invalid " + MODULE_NAME_OPTION + ": " + moduleName);
+        }
+
+        final String outputDirectory = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ServiceIndex.LOCATION)
+                .toUri().toString();
+        final byte[] digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1").digest(outputDirectory.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 8; i++)
+        {
+            name.append(String.format("%02x", digest[i]));
+        }
+        return ServiceIndex.location(name.toString());
+    }
+
+    private void writeIndex()
+    {
+        final String location;
+        try
+        {
+            location = indexLocation();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to locate the service index: " + e);
+            return;
+        }
+
+        // Keep entries from a previous incremental compilation as long as they still resolve to a service or actor
+        try
+        {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", location);
+            try (InputStream in = existing.openInputStream())
+            {
+                for (final String className : ServiceIndex.parse(in))
+                {
+                    final TypeElement element = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+                    if (element != null && (isService(element) || isActorScoped(element) || isActor(element)) && isDiscoverable(element))
+                    {
+                        indexedClasses.add(className);
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // No previous index
+        }
+
+        if (indexedClasses.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            final FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", location);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8))
+            {
+                for (final String className : indexedClasses)
+                {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + location + ": " + e);
+        }
+    }
+}
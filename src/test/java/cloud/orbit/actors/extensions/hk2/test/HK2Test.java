@@ -34,6 +34,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.inject.Singleton;
+
+import java.util.HashSet;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -109,4 +114,31 @@ public class HK2Test
         assertNotNull(o.getInjectTest());
     }
 
+    @Test
+    public void verifyAnnotationIndex()
+    {
+        assertTrue(container.getDiscoveredClasses().contains(SingletonClass.class));
+        assertTrue(container.getClassRegistry().getClassesAnnotatedWith(Singleton.class).contains(SingletonClass.class));
+        assertFalse(container.getClassRegistry().getClassesAnnotatedWith(Singleton.class).contains(NonSingletonClass.class));
+    }
+
+    @Test
+    public void verifyDiscoveredClassesList()
+    {
+        final List<Class<?>> discoveredClasses = container.getDiscoveredClasses();
+        assertEquals(container.getClassRegistry().size(), discoveredClasses.size());
+        assertEquals(container.getClassRegistry().getClasses(), new HashSet<>(discoveredClasses));
+        assertTrue(discoveredClasses.contains(SingletonClass.class));
+
+        try
+        {
+            discoveredClasses.clear();
+            fail("The discovered classes should be read-only");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+    }
+
 }
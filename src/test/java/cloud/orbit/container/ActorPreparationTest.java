@@ -0,0 +1,98 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Test;
+
+import cloud.orbit.actors.runtime.AbstractActor;
+import cloud.orbit.annotation.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ActorPreparationTest
+{
+    @Singleton
+    public static class GreetingService
+    {
+
+    }
+
+    public static class GreeterActor extends AbstractActor<Object>
+    {
+        @Inject
+        private GreetingService greetingService;
+
+        @Config("greeter.greeting")
+        private String greeting;
+    }
+
+    @Test
+    public void verifyPreparedAtStart()
+    {
+        final Container container = ContainerFixture.start(Collections.singletonMap("greeter.greeting", "hello"),
+                GreetingService.class, GreeterActor.class);
+        try
+        {
+            assertTrue(container.isInjectorCached(GreeterActor.class));
+            assertEquals(Collections.singleton("greeter.greeting"), ConfigInjectionPlan.of(GreeterActor.class).getKeys());
+
+            final GreeterActor actor = new GreeterActor();
+            container.injectActor(actor);
+            assertNotNull(actor.greetingService);
+            assertEquals("hello", actor.greeting);
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+
+    @Test
+    public void verifyPreparationDisabled()
+    {
+        final Container container = ContainerFixture.start(Collections.singletonMap("orbit.container.prepareActors", false),
+                GreetingService.class, GreeterActor.class);
+        try
+        {
+            assertFalse(container.isInjectorCached(GreeterActor.class));
+
+            container.injectActor(new GreeterActor());
+            assertTrue(container.isInjectorCached(GreeterActor.class));
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+}
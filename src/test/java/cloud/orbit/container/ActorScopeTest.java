@@ -0,0 +1,144 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ActorScopeTest
+{
+    private Container container;
+
+    @ActorScoped
+    public static class ActorState
+    {
+        private volatile boolean destroyed;
+
+        @PreDestroy
+        public void destroy()
+        {
+            destroyed = true;
+        }
+    }
+
+    @ActorScoped
+    public static class ActorHelper
+    {
+        @Inject
+        private ActorState state;
+    }
+
+    public static class SomeActor
+    {
+        @Inject
+        private ActorState state;
+
+        @Inject
+        private ActorHelper helper;
+    }
+
+    @Before
+    public void startContainer()
+    {
+        container = ContainerFixture.start(Collections.emptyMap(), ActorState.class, ActorHelper.class);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyInstancePerActor()
+    {
+        final SomeActor first = new SomeActor();
+        final SomeActor second = new SomeActor();
+        container.injectActor(first);
+        container.injectActor(second);
+
+        assertNotNull(first.state);
+        assertSame("one instance within an actor", first.state, first.helper.state);
+        assertNotSame(first.state, second.state);
+    }
+
+    @Test
+    public void verifyReinjectionKeepsInstances()
+    {
+        final SomeActor actor = new SomeActor();
+        container.injectActor(actor);
+        final ActorState state = actor.state;
+
+        container.injectActor(actor);
+        assertSame(state, actor.state);
+    }
+
+    @Test
+    public void verifyReleaseDisposes()
+    {
+        final SomeActor first = new SomeActor();
+        final SomeActor second = new SomeActor();
+        container.injectActors(Arrays.asList(first, second));
+        final ActorState released = first.state;
+
+        container.releaseActor(first);
+        assertTrue(released.destroyed);
+        assertFalse(second.state.destroyed);
+
+        // A released actor activated again gets new instances
+        container.injectActor(first);
+        assertNotSame(released, first.state);
+        assertFalse(first.state.destroyed);
+    }
+
+    @Test
+    public void verifyStopDisposesRemaining()
+    {
+        final SomeActor actor = new SomeActor();
+        container.injectActor(actor);
+
+        container.stop().join();
+        assertTrue(actor.state.destroyed);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void verifyInjectionOutsideActorFails()
+    {
+        container.inject(new SomeActor());
+    }
+}
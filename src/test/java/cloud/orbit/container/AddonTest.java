@@ -0,0 +1,91 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cloud.orbit.container.addons.Addon;
+import cloud.orbit.container.addons.HK2Addon;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AddonTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyPriorityOrder() throws Exception
+    {
+        // Registered before the low priority addon, and after the built in addons on the parent class loader
+        final File root = folder.newFolder("addons");
+        final File services = new File(root, "META-INF/services/" + Addon.class.getName());
+        services.getParentFile().mkdirs();
+        Files.write(services.toPath(), (HighPriorityAddon.class.getName() + "\n" + LowPriorityAddon.class.getName() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ root.toURI().toURL() }, AddonTest.class.getClassLoader()))
+        {
+            final List<Class<?>> addonClasses = Container.loadAddons(classLoader).stream()
+                    .map(Addon::getClass)
+                    .collect(Collectors.toList());
+            assertEquals(0, addonClasses.indexOf(LowPriorityAddon.class));
+            assertEquals(addonClasses.size() - 1, addonClasses.indexOf(HighPriorityAddon.class));
+            assertTrue(addonClasses.contains(HK2Addon.class));
+        }
+    }
+
+    public static class LowPriorityAddon implements Addon
+    {
+        @Override
+        public int getPriority()
+        {
+            return -10;
+        }
+    }
+
+    public static class HighPriorityAddon implements Addon
+    {
+        @Override
+        public int getPriority()
+        {
+            return 10;
+        }
+    }
+}
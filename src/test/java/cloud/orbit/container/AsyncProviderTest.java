@@ -0,0 +1,170 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.concurrent.Task;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncProviderTest
+{
+    private Container container;
+
+    public static class Connection
+    {
+
+    }
+
+    @Singleton
+    public static class ConnectionProvider implements AsyncProvider<Connection>
+    {
+        private final Task<Connection> task = new Task<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Task<Connection> get()
+        {
+            calls.incrementAndGet();
+            return task;
+        }
+    }
+
+    public static class ConnectedActor
+    {
+        @Inject
+        private Connection connection;
+    }
+
+    public static class PendingActor
+    {
+        @Inject
+        private Task<Connection> connection;
+    }
+
+    public static class PlainActor
+    {
+        @Inject
+        private Container container;
+    }
+
+    @Before
+    public void startContainer()
+    {
+        container = ContainerFixture.start(Collections.emptyMap(), ConnectionProvider.class);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyActivationWaitsForProvider()
+    {
+        final ConnectionProvider provider = container.get(ConnectionProvider.class);
+        final ConnectedActor actor = new ConnectedActor();
+
+        final Task<Void> injected = container.injectActorAsync(actor);
+        assertFalse(injected.isDone());
+        assertNull(actor.connection);
+
+        final Connection connection = new Connection();
+        provider.task.complete(connection);
+        injected.join();
+        assertSame(connection, actor.connection);
+
+        // Once ready the provider isn't asked again
+        final ConnectedActor other = new ConnectedActor();
+        container.injectActorAsync(other).join();
+        assertSame(connection, other.connection);
+        assertEquals(1, provider.calls.get());
+    }
+
+    @Test
+    public void verifyBatchActivationWaitsForProvider()
+    {
+        final ConnectionProvider provider = container.get(ConnectionProvider.class);
+        final ConnectedActor first = new ConnectedActor();
+        final ConnectedActor second = new ConnectedActor();
+
+        final Task<Void> injected = container.injectActorsAsync(Arrays.asList(first, second));
+        assertFalse(injected.isDone());
+
+        final Connection connection = new Connection();
+        provider.task.complete(connection);
+        injected.join();
+        assertSame(connection, first.connection);
+        assertSame(connection, second.connection);
+    }
+
+    @Test
+    public void verifyTaskInjectedRightAway()
+    {
+        final ConnectionProvider provider = container.get(ConnectionProvider.class);
+        final PendingActor actor = new PendingActor();
+
+        assertTrue(container.injectActorAsync(actor).isDone());
+        assertSame(provider.task, actor.connection);
+        assertFalse(actor.connection.isDone());
+    }
+
+    @Test
+    public void verifyNoDependencies()
+    {
+        final PlainActor actor = new PlainActor();
+
+        assertTrue(container.injectActorAsync(actor).isDone());
+        assertSame(container, actor.container);
+        assertEquals(0, container.get(ConnectionProvider.class).calls.get());
+    }
+
+    @Test
+    public void verifyFailedProviderFailsActivation()
+    {
+        final ConnectionProvider provider = container.get(ConnectionProvider.class);
+        final ConnectedActor actor = new ConnectedActor();
+
+        final Task<Void> injected = container.injectActorAsync(actor);
+        provider.task.completeExceptionally(new IllegalStateException("unreachable"));
+        assertTrue(injected.isCompletedExceptionally());
+        assertNull(actor.connection);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cloud.orbit.annotation.Config;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchInjectionTest
+{
+    private Container container;
+
+    @Singleton
+    public static class Registry
+    {
+
+    }
+
+    public static class FieldTarget
+    {
+        @Inject
+        private Registry registry;
+
+        @Inject
+        private Container container;
+
+        @Inject
+        private Provider<Registry> registryProvider;
+
+        @Config("batch.size")
+        private int size = 1;
+    }
+
+    public static class MethodTarget
+    {
+        private Registry registry;
+
+        @Config("batch.name")
+        private String name = "default";
+
+        @Inject
+        public void setRegistry(final Registry registry)
+        {
+            this.registry = registry;
+        }
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyInjectAll()
+    {
+        container = startContainer(Collections.emptyMap());
+        final Registry registry = container.get(Registry.class);
+
+        final List<Object> targets = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            targets.add(new FieldTarget());
+            targets.add(new MethodTarget());
+        }
+        container.injectAll(targets);
+
+        for (final Object target : targets)
+        {
+            if (target instanceof FieldTarget)
+            {
+                final FieldTarget fieldTarget = (FieldTarget) target;
+                assertSame(registry, fieldTarget.registry);
+                assertSame(container, fieldTarget.container);
+                assertSame(registry, fieldTarget.registryProvider.get());
+                assertEquals(5, fieldTarget.size);
+            }
+            else
+            {
+                final MethodTarget methodTarget = (MethodTarget) target;
+                assertSame(registry, methodTarget.registry);
+                assertEquals("batch", methodTarget.name);
+            }
+        }
+    }
+
+    @Test
+    public void verifyInjectAllWithoutConfig()
+    {
+        container = startContainer(Collections.emptyMap());
+
+        final FieldTarget fieldTarget = new FieldTarget();
+        final MethodTarget methodTarget = new MethodTarget();
+        container.injectAll(Arrays.asList(fieldTarget, methodTarget), false);
+
+        assertNotNull(fieldTarget.registry);
+        assertEquals(1, fieldTarget.size);
+        assertNotNull(methodTarget.registry);
+        assertEquals("default", methodTarget.name);
+    }
+
+    @Test
+    public void verifyParallelInjectAll()
+    {
+        container = startContainer(Collections.singletonMap("orbit.container.parallelInjectThreshold", "8"));
+        final Registry registry = container.get(Registry.class);
+
+        final List<FieldTarget> targets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            targets.add(new FieldTarget());
+        }
+        container.injectAll(targets);
+
+        for (final FieldTarget target : targets)
+        {
+            assertSame(registry, target.registry);
+            assertEquals(5, target.size);
+        }
+    }
+
+    @Test
+    public void verifyInjectMatchesInjectAll()
+    {
+        container = startContainer(Collections.emptyMap());
+
+        final FieldTarget single = new FieldTarget();
+        container.inject(single);
+        final FieldTarget batched = new FieldTarget();
+        container.injectAll(Collections.singletonList(batched));
+
+        assertSame(single.registry, batched.registry);
+        assertSame(single.container, batched.container);
+        assertEquals(single.size, batched.size);
+    }
+
+    private static Container startContainer(final Map<String, Object> extraSettings)
+    {
+        final Map<String, Object> settings = new HashMap<>(extraSettings);
+        settings.put("batch.size", "5");
+        settings.put("batch.name", "batch");
+        return ContainerFixture.start(settings, Registry.class);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cloud.orbit.container.classfiletest.AnnotatedService;
+import cloud.orbit.container.classfiletest.ConstantsService;
+import cloud.orbit.container.classfiletest.PlainOuter;
+import cloud.orbit.container.config.ContainerConfigImpl;
+
+import javax.inject.Singleton;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class ClassFileInfoTest
+{
+    private static final String SINGLETON = "Ljavax/inject/Singleton;";
+    private static final Set<String> INTERESTING = Collections.singleton(SINGLETON);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyMatchesReflection() throws Exception
+    {
+        final List<Class<?>> classes = new ArrayList<>();
+        collectClassTree(AnnotatedService.class, classes);
+        collectClassTree(PlainOuter.class, classes);
+        collectClassTree(ConstantsService.class, classes);
+
+        for (final Class<?> classType : classes)
+        {
+            final ClassFileInfo classFile = read(classType);
+            final boolean annotated = classType.isAnnotationPresent(Singleton.class);
+
+            assertEquals(classType.getName(), classFile.getName());
+            assertEquals(classType.getSuperclass().getName(), classFile.getSuperName());
+            assertEquals(classType.getName(), annotated, classFile.hasAnyAnnotation(INTERESTING));
+
+            // Inner class entries are only parsed for the classes worth loading
+            if (annotated && classType.getEnclosingClass() != null)
+            {
+                final ClassFileInfo.InnerClass innerClass = classFile.getInnerClass(classType.getName());
+                assertNotNull(classType.getName(), innerClass);
+                assertEquals(classType.getEnclosingClass().getName(), innerClass.getOuterName());
+                assertEquals(classType.getName(), Modifier.isPublic(classType.getModifiers()), innerClass.isPublic());
+            }
+        }
+    }
+
+    @Test
+    public void verifyBytecodeScanMatchesReflectionScan() throws Exception
+    {
+        final File root = folder.newFolder("root");
+        ClassPathScannerTest.copyClassTree(AnnotatedService.class, root);
+        ClassPathScannerTest.copyClassTree(PlainOuter.class, root);
+        ClassPathScannerTest.copyClassTree(ConstantsService.class, root);
+
+        final ContainerConfigImpl bytecodeConfig = new ContainerConfigImpl();
+        bytecodeConfig.put("orbit.container.bytecodeScan", "true");
+
+        final Set<String> reflected = services(ClassPathScannerTest.scan(new ContainerConfigImpl(), "cloud.orbit.container.classfiletest", root));
+        final Set<String> read = services(ClassPathScannerTest.scan(bytecodeConfig, "cloud.orbit.container.classfiletest", root));
+
+        assertEquals(new TreeSet<>(Arrays.asList(
+                AnnotatedService.class.getName(),
+                ConstantsService.class.getName(),
+                PlainOuter.PublicNestedService.class.getName(),
+                PlainOuter.PublicNested.DeeperService.class.getName())), reflected);
+        assertEquals(reflected, read);
+    }
+
+    @Test
+    public void verifyAllConstantPoolTags() throws Exception
+    {
+        final byte[] bytes = syntheticClassFile();
+
+        final ClassFileInfo classFile = ClassFileInfo.read(new ByteArrayInputStream(bytes), INTERESTING);
+        assertEquals("synthetic.Annotated", classFile.getName());
+        assertEquals("java.lang.Object", classFile.getSuperName());
+        assertTrue(classFile.hasAnyAnnotation(INTERESTING));
+
+        // Without an interesting descriptor only the header is read
+        final ClassFileInfo header = ClassFileInfo.read(new ByteArrayInputStream(bytes), Collections.singleton("Lother/Annotation;"));
+        assertEquals("synthetic.Annotated", header.getName());
+        assertFalse(header.hasAnyAnnotation(INTERESTING));
+    }
+
+    @Test(expected = IOException.class)
+    public void verifyRejectsNonClassFiles() throws Exception
+    {
+        ClassFileInfo.read(new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8 }), INTERESTING);
+    }
+
+    private static ClassFileInfo read(final Class<?> classType) throws IOException
+    {
+        try (InputStream in = classType.getClassLoader().getResourceAsStream(classType.getName().replace('.', '/') + ".class"))
+        {
+            return ClassFileInfo.read(in, INTERESTING);
+        }
+    }
+
+    private static void collectClassTree(final Class<?> classType, final List<Class<?>> classes)
+    {
+        classes.add(classType);
+        for (final Class<?> nestedClass : classType.getDeclaredClasses())
+        {
+            collectClassTree(nestedClass, classes);
+        }
+    }
+
+    private static Set<String> services(final List<String> classNames) throws ClassNotFoundException
+    {
+        final Set<String> services = new TreeSet<>();
+        for (final String className : classNames)
+        {
+            if (ClassPathScanner.isService(Class.forName(className)))
+            {
+                services.add(className);
+            }
+        }
+        return services;
+    }
+
+    /**
+     * A class file using every constant pool tag, including the ones javac only emits for condy and module-info,
+     * annotated with {@link Singleton}.
+     */
+    private static byte[] syntheticClassFile() throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(53);
+
+        out.writeShort(24); // constant pool count
+        out.writeByte(1); out.writeUTF("synthetic/Annotated");       // 1 Utf8
+        out.writeByte(7); out.writeShort(1);                         // 2 Class
+        out.writeByte(1); out.writeUTF("java/lang/Object");          // 3 Utf8
+        out.writeByte(7); out.writeShort(3);                         // 4 Class
+        out.writeByte(5); out.writeLong(Long.MAX_VALUE);             // 5 Long, takes 6 too
+        out.writeByte(6); out.writeDouble(Math.PI);                  // 7 Double, takes 8 too
+        out.writeByte(1); out.writeUTF(SINGLETON);                   // 9 Utf8
+        out.writeByte(1); out.writeUTF("RuntimeVisibleAnnotations"); // 10 Utf8
+        out.writeByte(12); out.writeShort(1); out.writeShort(9);     // 11 NameAndType
+        out.writeByte(15); out.writeByte(6); out.writeShort(11);     // 12 MethodHandle
+        out.writeByte(16); out.writeShort(9);                        // 13 MethodType
+        out.writeByte(17); out.writeShort(0); out.writeShort(11);    // 14 Dynamic
+        out.writeByte(18); out.writeShort(0); out.writeShort(11);    // 15 InvokeDynamic
+        out.writeByte(19); out.writeShort(1);                        // 16 Module
+        out.writeByte(20); out.writeShort(1);                        // 17 Package
+        out.writeByte(3); out.writeInt(42);                          // 18 Integer
+        out.writeByte(4); out.writeFloat(1.5f);                      // 19 Float
+        out.writeByte(8); out.writeShort(1);                         // 20 String
+        out.writeByte(9); out.writeShort(2); out.writeShort(11);     // 21 Fieldref
+        out.writeByte(10); out.writeShort(2); out.writeShort(11);    // 22 Methodref
+        out.writeByte(11); out.writeShort(2); out.writeShort(11);    // 23 InterfaceMethodref
+
+        out.writeShort(0x21); // public super
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(0); // methods
+
+        out.writeShort(1); // attributes
+        out.writeShort(10);
+        out.writeInt(6);
+        out.writeShort(1);
+        out.writeShort(9);
+        out.writeShort(0);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cloud.orbit.container.scantest.IndexedService;
+import cloud.orbit.container.scantest.PlainClass;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+public class ClassPathEntryTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyDirectory() throws Exception
+    {
+        final File root = folder.newFolder("classes");
+        ClassPathScannerTest.copyClass(IndexedService.class, root);
+        ClassPathScannerTest.copyClass(PlainClass.class, root);
+        new File(root, "META-INF").mkdirs();
+        Files.write(new File(root, "META-INF/resource.txt").toPath(), new byte[]{ 42 });
+
+        try (ClassPathEntry entry = new ClassPathEntry(root))
+        {
+            assertTrue(entry.isDirectory());
+            assertEquals(new HashSet<>(Arrays.asList(IndexedService.class.getName(), PlainClass.class.getName())),
+                    new HashSet<>(entry.getClassNames()));
+            assertClassFile(entry.openClass(IndexedService.class.getName()));
+            assertResource(entry);
+        }
+    }
+
+    @Test
+    public void verifyJar() throws Exception
+    {
+        final File jar = new File(folder.getRoot(), "classes.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            addClass(out, IndexedService.class);
+            addClass(out, PlainClass.class);
+            out.putNextEntry(new ZipEntry("META-INF/resource.txt"));
+            out.write(42);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("META-INF/versions/9/module-info.class"));
+            out.closeEntry();
+        }
+
+        try (ClassPathEntry entry = new ClassPathEntry(jar))
+        {
+            assertFalse(entry.isDirectory());
+            assertEquals(jar.length(), entry.getSize());
+            assertEquals(new HashSet<>(Arrays.asList(IndexedService.class.getName(), PlainClass.class.getName())),
+                    new HashSet<>(entry.getClassNames()));
+            assertClassFile(entry.openClass(PlainClass.class.getName()));
+            assertResource(entry);
+
+            final String hash = entry.getHash();
+            assertEquals(40, hash.length());
+            assertTrue(jar.setLastModified(jar.lastModified() + 60000));
+            assertEquals(hash, new ClassPathEntry(jar).getHash());
+        }
+    }
+
+    @Test
+    public void verifyManifestClassPath() throws Exception
+    {
+        final File lib = folder.newFolder("lib");
+        final File nested = folder.newFolder("nested");
+        final File dependency = new File(lib, "dependency.jar");
+        final File transitive = new File(lib, "transitive.jar");
+        final File app = new File(folder.getRoot(), "app.jar");
+        ClassPathScannerTest.writeJar(transitive, "dependency.jar ../app.jar", Collections.emptyMap(), PlainClass.class);
+        ClassPathScannerTest.writeJar(dependency, "transitive.jar ../nested/ ../missing.jar", Collections.emptyMap(), IndexedService.class);
+        ClassPathScannerTest.writeJar(app, "lib/dependency.jar", Collections.emptyMap());
+
+        // Referenced entries follow the jar referencing them, cycles and missing entries are skipped
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ app.toURI().toURL() }, null))
+        {
+            final List<String> paths = new ArrayList<>();
+            for (final ClassPathEntry entry : ClassPathEntry.from(classLoader))
+            {
+                paths.add(new File(entry.getPath()).getCanonicalPath());
+                entry.close();
+            }
+            assertEquals(Arrays.asList(app.getCanonicalPath(), dependency.getCanonicalPath(),
+                    transitive.getCanonicalPath(), nested.getCanonicalPath()), paths);
+        }
+    }
+
+    private static void assertResource(final ClassPathEntry entry) throws IOException
+    {
+        try (InputStream in = entry.openResource("META-INF/resource.txt"))
+        {
+            assertEquals(42, in.read());
+        }
+        assertNull(entry.openResource("META-INF/missing.txt"));
+    }
+
+    private static void assertClassFile(final InputStream in) throws IOException
+    {
+        try (InputStream classFile = in)
+        {
+            assertEquals(0xCA, classFile.read());
+            assertEquals(0xFE, classFile.read());
+        }
+    }
+
+    private static void addClass(final JarOutputStream out, final Class<?> classType) throws IOException
+    {
+        final String resourceName = classType.getName().replace('.', '/') + ".class";
+        out.putNextEntry(new ZipEntry(resourceName));
+        try (InputStream in = classType.getClassLoader().getResourceAsStream(resourceName))
+        {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+        }
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+import cloud.orbit.container.config.ContainerConfig;
+import cloud.orbit.container.config.ContainerConfigImpl;
+import cloud.orbit.container.scantest.IndexedService;
+import cloud.orbit.container.scantest.PlainClass;
+import cloud.orbit.container.scantest.UnindexedService;
+import cloud.orbit.container.scantest.sub.SubService;
+import cloud.orbit.container.scantest.subother.SubOtherService;
+
+import javax.inject.Singleton;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+public class ClassPathScannerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyRootsWithoutIndexAreScanned() throws Exception
+    {
+        // The index of the first root lists a class that a scan would skip, proving the index is used
+        final File indexedRoot = folder.newFolder("indexed");
+        copyClass(IndexedService.class, indexedRoot);
+        copyClass(PlainClass.class, indexedRoot);
+        final File index = new File(indexedRoot, ServiceIndex.LOCATION);
+        index.getParentFile().mkdirs();
+        Files.write(index.toPath(), (IndexedService.class.getName() + "\n" + PlainClass.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+
+        final File plainRoot = folder.newFolder("plain");
+        copyClass(UnindexedService.class, plainRoot);
+
+        final List<String> classNames = scan(indexedRoot, plainRoot);
+        assertTrue(classNames.contains(IndexedService.class.getName()));
+        assertTrue(classNames.contains(PlainClass.class.getName()));
+        assertTrue(classNames.contains(UnindexedService.class.getName()));
+    }
+
+    @Test
+    public void verifyScanWithoutAnyIndex() throws Exception
+    {
+        final File root = folder.newFolder("root");
+        copyClass(IndexedService.class, root);
+        copyClass(PlainClass.class, root);
+
+        final List<String> classNames = scan(root);
+        assertTrue(classNames.contains(IndexedService.class.getName()));
+        assertTrue(classNames.contains(PlainClass.class.getName()));
+    }
+
+    @Test
+    public void verifyManifestClassPathIsScanned() throws Exception
+    {
+        // As with java -jar, the application jar only references its libraries
+        final File lib = folder.newFolder("app", "lib");
+        writeJar(new File(lib, "indexed.jar"), null, Collections.singletonMap(ServiceIndex.location("indexed"),
+                IndexedService.class.getName() + "\n"), IndexedService.class);
+        writeJar(new File(lib, "plain.jar"), null, Collections.emptyMap(), UnindexedService.class);
+        final File app = new File(lib.getParentFile(), "app.jar");
+        writeJar(app, "lib/indexed.jar lib/plain.jar lib/missing.jar", Collections.emptyMap());
+
+        final List<String> classNames = scan(app);
+        assertTrue(classNames.contains(IndexedService.class.getName()));
+        assertTrue(classNames.contains(UnindexedService.class.getName()));
+    }
+
+    @Test
+    public void verifyEveryModuleIndexIsRead() throws Exception
+    {
+        // A shaded jar keeps the index of each module, the indexes list classes a scan would skip
+        final Map<String, String> indexes = new HashMap<>();
+        indexes.put(ServiceIndex.location("first"), IndexedService.class.getName() + "\n");
+        indexes.put(ServiceIndex.location("second"), PlainClass.class.getName() + "\n");
+        indexes.put(ServiceIndex.DIRECTORY + "other.txt", PlainClass.class.getName() + "\n");
+        final File shaded = new File(folder.getRoot(), "shaded.jar");
+        writeJar(shaded, null, indexes, IndexedService.class, PlainClass.class, UnindexedService.class);
+
+        final List<String> classNames = scan(shaded);
+        assertEquals(Arrays.asList(IndexedService.class.getName(), PlainClass.class.getName()), classNames);
+    }
+
+    @Test
+    public void verifyPackagesMatchedOnce() throws Exception
+    {
+        // The configured packages and the added ones are matched together, nested packages add nothing twice
+        final Map<String, Object> settings = Collections.singletonMap("orbit.container.packages",
+                Arrays.asList("cloud.orbit.container.scantest.sub", "cloud.orbit.container.scantest"));
+        final Container container = ContainerFixture.create(settings);
+        container.addPackageToScan("cloud.orbit.container.scantest.sub");
+        container.start().join();
+        try
+        {
+            final List<Class<?>> discoveredClasses = container.getDiscoveredClasses();
+            assertEquals(1, Collections.frequency(discoveredClasses, SubService.class));
+            assertEquals(1, Collections.frequency(discoveredClasses, SubOtherService.class));
+            assertEquals(1, Collections.frequency(discoveredClasses, IndexedService.class));
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+
+    @Test
+    public void verifySiblingPackagesNotMatched() throws Exception
+    {
+        // cloud.orbit.container.scantest.sub must not match cloud.orbit.container.scantest.subother
+        final Container container = ContainerFixture.start(Collections.singletonMap("orbit.container.packages",
+                Collections.singletonList("cloud.orbit.container.scantest.sub")));
+        try
+        {
+            assertTrue(container.getDiscoveredClasses().contains(SubService.class));
+            assertFalse(container.getDiscoveredClasses().contains(SubOtherService.class));
+            assertFalse(container.getDiscoveredClasses().contains(IndexedService.class));
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+
+        final File root = folder.newFolder("root");
+        copyClass(SubService.class, root);
+        copyClass(SubOtherService.class, root);
+        copyClass(PlainClass.class, root);
+        final List<String> classNames = scan(new ContainerConfigImpl(),
+                Arrays.asList("cloud.orbit.container.scantest.sub", "cloud.orbit.container.scantest.sub"), root);
+        assertEquals(Collections.singletonList(SubService.class.getName()), classNames);
+    }
+
+    @Test
+    public void verifyParallelScanKeepsOrder() throws Exception
+    {
+        // Registration order, and so the boot, must not depend on which scan thread finishes first
+        final List<String> sequential = discoveredServices(Collections.emptyMap());
+        assertEquals(4, sequential.size());
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("orbit.container.parallelScan", true);
+        settings.put("orbit.container.scanParallelism", 4);
+        assertEquals(sequential, discoveredServices(settings));
+
+        final File root = folder.newFolder("root");
+        copyClass(IndexedService.class, root);
+        copyClass(PlainClass.class, root);
+        copyClass(UnindexedService.class, root);
+        copyClass(SubService.class, root);
+        copyClass(SubOtherService.class, root);
+        final ContainerConfigImpl parallelConfig = new ContainerConfigImpl();
+        parallelConfig.putAll(settings);
+        assertEquals(scan(root), scan(parallelConfig, "cloud.orbit.container.scantest", root));
+    }
+
+    private static List<String> scan(final File... roots) throws Exception
+    {
+        return scan(new ContainerConfigImpl(), "cloud.orbit.container.scantest", roots);
+    }
+
+    private static List<String> discoveredServices(final Map<String, Object> settings)
+    {
+        final Map<String, Object> packageSettings = new HashMap<>(settings);
+        packageSettings.put("orbit.container.packages", Collections.singletonList("cloud.orbit.container.scantest"));
+        final Container container = ContainerFixture.start(packageSettings);
+        try
+        {
+            return container.getDiscoveredServices().stream()
+                    .map(service -> service.getClass().getName())
+                    .collect(Collectors.toList());
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+
+    /**
+     * Scans the roots through a class loader that only shares the annotations with the test classpath.
+     */
+    static List<String> scan(final ContainerConfig config, final String packageName, final File... roots) throws Exception
+    {
+        return scan(config, Collections.singletonList(packageName), roots);
+    }
+
+    static List<String> scan(final ContainerConfig config, final List<String> packages, final File... roots) throws Exception
+    {
+        final URL[] urls = new URL[roots.length];
+        for (int i = 0; i < roots.length; i++)
+        {
+            urls[i] = roots[i].toURI().toURL();
+        }
+
+        // Only the annotations are shared, the roots must not be reachable through the test classpath
+        final ClassLoader annotations = new ClassLoader(null)
+        {
+            @Override
+            protected Class<?> findClass(final String name) throws ClassNotFoundException
+            {
+                if (name.startsWith("javax.inject.") || name.startsWith("org.jvnet.hk2.annotations."))
+                {
+                    return Singleton.class.getClassLoader().loadClass(name);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+
+        try (URLClassLoader classLoader = new URLClassLoader(urls, annotations);
+             ClassPathScanner scanner = new ClassPathScanner(classLoader, config))
+        {
+            return scanner.scanPackages(packages).stream()
+                    .flatMap(List::stream)
+                    .map(Class::getName)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param classPath the manifest Class-Path, or null for none
+     * @param resources the content of other resources by name
+     */
+    static void writeJar(final File jar, final String classPath, final Map<String, String> resources, final Class<?>... classes)
+            throws IOException
+    {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null)
+        {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest))
+        {
+            for (final Class<?> classType : classes)
+            {
+                final String resourceName = classType.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new ZipEntry(resourceName));
+                try (InputStream in = classType.getClassLoader().getResourceAsStream(resourceName))
+                {
+                    ByteStreams.copy(in, out);
+                }
+                out.closeEntry();
+            }
+            for (final Map.Entry<String, String> resource : resources.entrySet())
+            {
+                out.putNextEntry(new ZipEntry(resource.getKey()));
+                out.write(resource.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Copies the class file of the class and of all its nested classes.
+     */
+    static void copyClassTree(final Class<?> classType, final File root) throws IOException
+    {
+        copyClass(classType, root);
+        for (final Class<?> nestedClass : classType.getDeclaredClasses())
+        {
+            copyClassTree(nestedClass, root);
+        }
+    }
+
+    static void copyClass(final Class<?> classType, final File root) throws IOException
+    {
+        final String resourceName = classType.getName().replace('.', '/') + ".class";
+        final File target = new File(root, resourceName);
+        target.getParentFile().mkdirs();
+        try (InputStream in = classType.getClassLoader().getResourceAsStream(resourceName))
+        {
+            Files.copy(in, target.toPath());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class ConfigInjectionTest
+{
+    private Container container;
+
+    public static class CollectionFields
+    {
+        @Config("values")
+        private List<String> list;
+
+        @Config("values")
+        private Set<String> set;
+
+        @Config("values")
+        private ArrayList<String> arrayList;
+
+        @Config("values")
+        private LinkedList<String> linkedList;
+
+        @Config("values")
+        private HashSet<String> hashSet;
+
+        @Config("values")
+        private LinkedHashSet<String> linkedHashSet;
+
+        @Config("values")
+        private TreeSet<String> treeSet;
+
+        @Config("single")
+        private HashSet<String> singleHashSet;
+
+        @Config("missing")
+        private HashSet<String> missing = new HashSet<>();
+    }
+
+    @Before
+    public void startContainer()
+    {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("values", new ArrayList<>(Arrays.asList("b", "a", "b")));
+        settings.put("single", "only");
+        container = ContainerFixture.start(settings);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyCollectionImplementations()
+    {
+        final CollectionFields fields = container.get(CollectionFields.class, true);
+
+        assertEquals(Arrays.asList("b", "a", "b"), fields.list);
+        assertEquals(Arrays.asList("b", "a", "b"), fields.arrayList);
+        assertEquals(Arrays.asList("b", "a", "b"), fields.linkedList);
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(fields.set));
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(fields.linkedHashSet));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), fields.hashSet);
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(fields.treeSet));
+        assertEquals(new HashSet<>(Arrays.asList("only")), fields.singleHashSet);
+        assertTrue(fields.missing.isEmpty());
+    }
+
+    @Test
+    public void verifyInstancesDontShareCollections()
+    {
+        final CollectionFields first = container.get(CollectionFields.class, true);
+        final CollectionFields second = container.get(CollectionFields.class, true);
+
+        first.hashSet.add("c");
+        first.linkedList.add("c");
+        assertFalse(second.hashSet.contains("c"));
+        assertFalse(second.linkedList.contains("c"));
+    }
+}
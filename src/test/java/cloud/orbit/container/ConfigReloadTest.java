@@ -0,0 +1,194 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cloud.orbit.annotation.Config;
+import cloud.orbit.container.config.ConfigChangeListener;
+import cloud.orbit.exception.UncheckedException;
+
+import javax.inject.Singleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class ConfigReloadTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File configFile;
+    private Container container;
+
+    @Singleton
+    public static class ReloadedService implements ConfigChangeListener
+    {
+        @Config("reload.name")
+        private String name;
+
+        @Config("reload.port")
+        private int port;
+
+        private final List<Set<String>> changes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onConfigChanged(final Set<String> changedKeys)
+        {
+            changes.add(changedKeys);
+        }
+    }
+
+    @Pooled(maxSize = 1)
+    public static class PooledReader
+    {
+        @Config("reload.name")
+        private String name;
+    }
+
+    @Before
+    public void startContainer() throws IOException
+    {
+        configFile = folder.newFile("orbit.yaml");
+        write("reload.name: first", "reload.port: 1", "reload.other: a");
+        System.setProperty("orbit.configFile", configFile.getPath());
+
+        container = new Container("config-reload");
+        container.addClassToScan(ReloadedService.class);
+        container.start().join();
+    }
+
+    @After
+    public void stopContainer()
+    {
+        System.clearProperty("orbit.configFile");
+        ContainerFixture.stop(container);
+    }
+
+    private void write(final String... lines) throws IOException
+    {
+        Files.write(configFile.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifyChangedKeysReinjected() throws IOException
+    {
+        final ReloadedService service = container.get(ReloadedService.class);
+        assertEquals("first", service.name);
+        assertEquals(1, service.port);
+
+        write("reload.name: first", "reload.port: 2", "reload.added: b");
+        assertEquals(new HashSet<>(Arrays.asList("reload.port", "reload.other", "reload.added")), container.reloadConfig());
+
+        assertEquals(2, service.port);
+        assertEquals("first", service.name);
+        assertEquals("b", container.getConfiguration().getAsString("reload.added"));
+        assertNull(container.getConfiguration().getAsString("reload.other"));
+        assertEquals(Arrays.asList(new HashSet<>(Arrays.asList("reload.port"))), service.changes);
+
+        assertTrue("nothing changed since", container.reloadConfig().isEmpty());
+        assertEquals(1, service.changes.size());
+    }
+
+    @Test
+    public void verifyRemovedKeysFallBack() throws IOException
+    {
+        // Also set by the classpath config
+        write("reload.name: first", "reload.port: 1", "reload.other: a", "singleton.overrideVar: file");
+        assertEquals(new HashSet<>(Arrays.asList("singleton.overrideVar")), container.reloadConfig());
+        assertEquals("file", container.getConfiguration().getAsString("singleton.overrideVar"));
+
+        write("reload.name: first", "reload.port: 1", "reload.other: a");
+        assertEquals(new HashSet<>(Arrays.asList("singleton.overrideVar")), container.reloadConfig());
+        assertEquals("overridden", container.getConfiguration().getAsString("singleton.overrideVar"));
+    }
+
+    @Test
+    public void verifyProgrammaticValuesKept() throws IOException
+    {
+        container.getConfiguration().put("reload.name", "put");
+        container.getConfiguration().put("reload.programmatic", "put");
+
+        write("reload.name: second", "reload.port: 1");
+        assertEquals(new HashSet<>(Arrays.asList("reload.other")), container.reloadConfig());
+        assertEquals("put", container.getConfiguration().getAsString("reload.name"));
+        assertEquals("put", container.getConfiguration().getAsString("reload.programmatic"));
+    }
+
+    @Test
+    public void verifyBrokenFileAbortsReload() throws IOException
+    {
+        write("reload.name: second", "reload.port: [unterminated");
+        try
+        {
+            container.reloadConfig();
+            fail("a config file that doesn't parse should fail the reload");
+        }
+        catch(UncheckedException e)
+        {
+            // Expected
+        }
+        assertEquals("first", container.getConfiguration().getAsString("reload.name"));
+        assertEquals("a", container.getConfiguration().getAsString("reload.other"));
+        assertEquals("first", container.get(ReloadedService.class).name);
+
+        // Once the file is fixed, the changes are measured against what was last read
+        write("reload.name: second", "reload.port: 1", "reload.other: a");
+        assertEquals(new HashSet<>(Arrays.asList("reload.name")), container.reloadConfig());
+        assertEquals("second", container.get(ReloadedService.class).name);
+    }
+
+    @Test
+    public void verifyPooledInstancesDropped() throws IOException
+    {
+        final PooledReader reader = container.get(PooledReader.class, true);
+        assertEquals("first", reader.name);
+        assertTrue(container.release(reader));
+
+        write("reload.name: second", "reload.port: 1", "reload.other: a");
+        container.reloadConfig();
+
+        final PooledReader next = container.get(PooledReader.class, true);
+        assertNotSame(reader, next);
+        assertEquals("second", next.name);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import cloud.orbit.container.config.ContainerConfigImpl;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts containers on exactly the given classes, under a name of their own so their service locators don't mix.
+ */
+class ContainerFixture
+{
+    private static final AtomicInteger containerCount = new AtomicInteger();
+
+    private ContainerFixture()
+    {
+
+    }
+
+    static Container start(final Map<String, ?> settings, final Class<?>... classes)
+    {
+        final Container container = create(settings, classes);
+        container.start().join();
+        return container;
+    }
+
+    static Container create(final Map<String, ?> settings, final Class<?>... classes)
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        config.putAll(settings);
+
+        final Container container = new Container("container-fixture-" + containerCount.incrementAndGet());
+        container.setConfiguration(config);
+        for (final Class<?> classType : classes)
+        {
+            container.addClassToScan(classType);
+        }
+        return container;
+    }
+
+    static void stop(final Container container)
+    {
+        if (container != null && container.getServiceLocator() != null)
+        {
+            container.stop().join();
+            container.getServiceLocator().shutdown();
+        }
+    }
+}
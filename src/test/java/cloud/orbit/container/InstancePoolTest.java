@@ -0,0 +1,226 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class InstancePoolTest
+{
+    private Container container;
+
+    @Pooled(maxSize = 1)
+    public static class PooledObject implements Resettable
+    {
+        private int uses;
+
+        @Override
+        public void reset()
+        {
+            uses = 0;
+        }
+    }
+
+    public static class ConfiguredPoolObject
+    {
+
+    }
+
+    public static class UnpooledObject
+    {
+
+    }
+
+    @Before
+    public void startContainer()
+    {
+        container = ContainerFixture.start(
+                Collections.singletonMap("orbit.container.poolSize." + ConfiguredPoolObject.class.getName(), 1));
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    private InstancePool poolOf(final Class<?> classType)
+    {
+        return container.getInstancePools().stream()
+                .filter(pool -> pool.getType() == classType)
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Test
+    public void verifyHitsAndMisses()
+    {
+        final PooledObject first = container.get(PooledObject.class, true);
+        first.uses = 3;
+        final InstancePool pool = poolOf(PooledObject.class);
+        assertNotNull(pool);
+        assertEquals(1, pool.getMaxSize());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getHits());
+
+        assertTrue(container.release(first));
+        assertEquals(1, pool.getSize());
+        assertEquals("released instances are reset", 0, first.uses);
+
+        assertSame(first, container.get(PooledObject.class, true));
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getSize());
+
+        assertNotSame(first, container.get(PooledObject.class, true));
+        assertEquals(2, pool.getMisses());
+    }
+
+    @Test
+    public void verifyFullPoolDiscards()
+    {
+        final PooledObject first = container.get(PooledObject.class, true);
+        final PooledObject second = container.get(PooledObject.class, true);
+
+        assertTrue(container.release(first));
+        assertFalse(container.release(second));
+
+        final InstancePool pool = poolOf(PooledObject.class);
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getDiscarded());
+    }
+
+    @Test
+    public void verifyConfiguredPoolSize()
+    {
+        final ConfiguredPoolObject first = container.get(ConfiguredPoolObject.class, true);
+        assertTrue(container.release(first));
+        assertSame(first, container.get(ConfiguredPoolObject.class, true));
+        assertEquals(1, poolOf(ConfiguredPoolObject.class).getMaxSize());
+    }
+
+    @Test
+    public void verifyUnpooledRelease()
+    {
+        final UnpooledObject first = container.get(UnpooledObject.class, true);
+        assertFalse(container.release(first));
+        assertNull(poolOf(UnpooledObject.class));
+        assertNotSame(first, container.get(UnpooledObject.class, true));
+    }
+
+    @Test
+    public void verifyStripesAddUpToMaxSize()
+    {
+        final InstancePool pool = new InstancePool(Object.class, 3);
+        for (int i = 0; i < 3; i++)
+        {
+            pool.release(new Object());
+        }
+        // A single thread only sees its own stripe, the other stripes stay empty
+        assertTrue(pool.getSize() >= 1);
+        assertEquals(3, pool.getSize() + pool.getDiscarded());
+
+        pool.clear();
+        assertEquals(0, pool.getSize());
+        assertNull(pool.acquire());
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test
+    public void verifyStripesNeverEmpty() throws InterruptedException
+    {
+        assertEquals(1, InstancePool.stripeCount(1, 8));
+        assertEquals(2, InstancePool.stripeCount(3, 8));
+        assertEquals(4, InstancePool.stripeCount(5, 8));
+        assertEquals(8, InstancePool.stripeCount(64, 8));
+        assertEquals(8, InstancePool.stripeCount(64, 6));
+        assertEquals(1, InstancePool.stripeCount(64, 1));
+
+        // Whichever stripe a thread gets, it can pool an instance
+        final int maxSize = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        final InstancePool pool = new InstancePool(Object.class, maxSize);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++)
+        {
+            threads.add(new Thread(() ->
+            {
+                final Object o = new Object();
+                synchronized (pool)
+                {
+                    pool.clear();
+                    assertTrue(pool.release(o));
+                    assertSame(o, pool.acquire());
+                }
+            }));
+        }
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        threads.forEach(thread ->
+        {
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+        });
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(0, pool.getDiscarded());
+    }
+
+    @Test
+    public void verifyRegistrationKeepsPools()
+    {
+        final PooledObject first = container.get(PooledObject.class, true);
+        container.release(first);
+        assertEquals(1, poolOf(PooledObject.class).getSize());
+
+        ServiceLocatorUtilities.addOneConstant(container.getServiceLocator(), new UnpooledObject());
+        assertEquals(1, poolOf(PooledObject.class).getSize());
+        assertSame(first, container.get(PooledObject.class, true));
+    }
+
+    @Test
+    public void verifyStopEmptiesPools()
+    {
+        final PooledObject first = container.get(PooledObject.class, true);
+        container.release(first);
+        assertEquals(1, poolOf(PooledObject.class).getSize());
+
+        container.stop().join();
+        assertEquals(0, poolOf(PooledObject.class).getSize());
+    }
+}
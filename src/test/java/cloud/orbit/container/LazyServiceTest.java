@@ -0,0 +1,210 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.annotation.Config;
+import cloud.orbit.concurrent.Task;
+import cloud.orbit.lifecycle.Startable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class LazyServiceTest
+{
+    private static final List<String> events = new CopyOnWriteArrayList<>();
+
+    private Container container;
+
+    @Singleton
+    public static class Lazy implements Startable
+    {
+        @Inject
+        private Container container;
+
+        @Config("lazy.name")
+        private String name;
+
+        public Lazy()
+        {
+            events.add("lazy created");
+        }
+
+        @Override
+        public Task<?> start()
+        {
+            events.add("lazy started");
+            return Task.done();
+        }
+
+        @Override
+        public Task<?> stop()
+        {
+            events.add("lazy stopped");
+            return Task.done();
+        }
+    }
+
+    @Singleton
+    public static class LazyConsumer
+    {
+        @Inject
+        private Lazy lazy;
+
+        public LazyConsumer()
+        {
+            events.add("consumer created");
+        }
+    }
+
+    @Eager
+    @Singleton
+    public static class EagerService implements Startable
+    {
+        @Override
+        public Task<?> start()
+        {
+            events.add("eager started");
+            return Task.done();
+        }
+    }
+
+    @Eager
+    @Singleton
+    public static class EagerUser implements Startable
+    {
+        @Inject
+        private Lazy lazy;
+
+        @Override
+        public Task<?> start()
+        {
+            events.add("eager user started");
+            return Task.done();
+        }
+
+        @Override
+        public Task<?> stop()
+        {
+            events.add("eager user stopped");
+            return Task.done();
+        }
+    }
+
+    @Before
+    public void reset()
+    {
+        events.clear();
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyLazyActivation()
+    {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("orbit.container.lazyServices", "true");
+        settings.put("lazy.name", "configured");
+        container = ContainerFixture.start(settings, Lazy.class, LazyConsumer.class, EagerService.class);
+
+        // Only the eager service was built at boot
+        assertEquals(Collections.singletonList("eager started"), events);
+        assertEquals(1, container.getDiscoveredServices().size());
+
+        final Lazy lazy = container.get(Lazy.class);
+        assertNotNull(lazy);
+        assertSame(container, lazy.container);
+        assertEquals("configured", lazy.name);
+        assertEquals(Arrays.asList("eager started", "lazy created", "lazy started"), events);
+        assertSame(lazy, container.get(Lazy.class));
+        assertTrue(container.getDiscoveredServices().contains(lazy));
+    }
+
+    @Test
+    public void verifyLazyActivationThroughInjection()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("orbit.container.lazyServices", "true"),
+                Lazy.class, LazyConsumer.class);
+        assertTrue(events.isEmpty());
+
+        final LazyConsumer consumer = container.get(LazyConsumer.class);
+        assertSame(container.get(Lazy.class), consumer.lazy);
+        assertEquals(Arrays.asList("consumer created", "lazy created", "lazy started"), events);
+
+        // Activated lazy services are stopped like the others
+        container.stop().join();
+        assertTrue(events.contains("lazy stopped"));
+        container.getServiceLocator().shutdown();
+        container = null;
+    }
+
+    @Test
+    public void verifyEagerByDefault()
+    {
+        container = ContainerFixture.start(Collections.emptyMap(), Lazy.class, EagerService.class);
+        assertTrue(events.contains("lazy created"));
+        assertTrue(events.contains("lazy started"));
+        assertTrue(events.contains("eager started"));
+    }
+
+    @Test
+    public void verifyEagerServiceInjectingLazyOne()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("orbit.container.lazyServices", "true"),
+                Lazy.class, EagerUser.class);
+
+        // The lazy service is activated, and started once, while the eager one is injected
+        assertEquals(Arrays.asList("lazy created", "lazy started", "eager user started"), events);
+        final EagerUser user = container.get(EagerUser.class);
+        assertSame(container.get(Lazy.class), user.lazy);
+        assertEquals(2, container.getDiscoveredServices().size());
+
+        events.clear();
+        container.stop().join();
+        assertEquals(Arrays.asList("eager user stopped", "lazy stopped"), events);
+        container.getServiceLocator().shutdown();
+        container = null;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Test;
+
+import cloud.orbit.concurrent.Task;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LifecycleExecutorTest
+{
+    @Singleton
+    public static class ThreadRecorder
+    {
+        private volatile Thread startThread;
+        private volatile Thread stopThread;
+
+        @PostConstruct
+        public void start()
+        {
+            startThread = Thread.currentThread();
+        }
+
+        @PreDestroy
+        public void stop()
+        {
+            stopThread = Thread.currentThread();
+        }
+    }
+
+    @Test
+    public void verifyStopBeforeStart()
+    {
+        final Container container = new Container();
+        final Task<?> stopped = container.stop();
+
+        assertTrue(stopped.isDone());
+        assertFalse(stopped.isCompletedExceptionally());
+        assertNull(container.getServiceLocator());
+    }
+
+    @Test
+    public void verifyConfiguredStopBeforeStart()
+    {
+        final Container container = ContainerFixture.create(Collections.singletonMap("orbit.container.executor", "platform"));
+
+        container.stop().join();
+        assertNull(container.getServiceLocator());
+    }
+
+    @Test
+    public void verifyCallerMode()
+    {
+        final Container container = ContainerFixture.create(Collections.emptyMap(), ThreadRecorder.class);
+        try
+        {
+            assertTrue(container.start().isDone());
+            final ThreadRecorder recorder = container.get(ThreadRecorder.class);
+            assertSame(Thread.currentThread(), recorder.startThread);
+
+            assertTrue(container.stop().isDone());
+            assertSame(Thread.currentThread(), recorder.stopThread);
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+
+    @Test
+    public void verifyPlatformMode()
+    {
+        final Container container = ContainerFixture.create(Collections.singletonMap("orbit.container.executor", "platform"),
+                ThreadRecorder.class);
+        try
+        {
+            container.start().join();
+            final ThreadRecorder recorder = container.get(ThreadRecorder.class);
+            assertNotSame(Thread.currentThread(), recorder.startThread);
+            assertTrue(recorder.startThread.getName().endsWith("-start-0"));
+
+            container.stop().join();
+            assertNotSame(Thread.currentThread(), recorder.stopThread);
+            assertTrue(recorder.stopThread.getName().endsWith("-stop-0"));
+        }
+        finally
+        {
+            ContainerFixture.stop(container);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.annotation.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PrototypeTest
+{
+    private Container container;
+
+    @Singleton
+    public static class Shared
+    {
+
+    }
+
+    @PerLookup
+    public static class PerLookupService
+    {
+
+    }
+
+    public static class NoArgPrototype
+    {
+        @Inject
+        private Shared shared;
+
+        @Config("prototype.name")
+        private String name;
+    }
+
+    public static class SingletonArgPrototype
+    {
+        private final Shared constructorShared;
+
+        @Inject
+        private Container container;
+
+        @Inject
+        public SingletonArgPrototype(final Shared shared)
+        {
+            this.constructorShared = shared;
+        }
+    }
+
+    public static class PerLookupArgPrototype
+    {
+        private final PerLookupService perLookup;
+        private Container methodContainer;
+
+        @Inject
+        private Shared shared;
+
+        @Config("prototype.name")
+        private String name;
+
+        @Inject
+        public PerLookupArgPrototype(final PerLookupService perLookup)
+        {
+            this.perLookup = perLookup;
+        }
+
+        @Inject
+        public void setContainer(final Container container)
+        {
+            this.methodContainer = container;
+        }
+    }
+
+    @Before
+    public void startContainer()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("prototype.name", "configured"), Shared.class);
+        ServiceLocatorUtilities.addClasses(container.getServiceLocator(), PerLookupService.class);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyNoArgConstructor()
+    {
+        final NoArgPrototype first = container.get(NoArgPrototype.class, true);
+        final NoArgPrototype second = container.get(NoArgPrototype.class, true);
+
+        assertNotSame(first, second);
+        assertSame(container.get(Shared.class), first.shared);
+        assertSame(first.shared, second.shared);
+        assertEquals("configured", second.name);
+    }
+
+    @Test
+    public void verifySingletonConstructorArguments()
+    {
+        final SingletonArgPrototype prototype = container.get(SingletonArgPrototype.class, true);
+
+        assertSame(container.get(Shared.class), prototype.constructorShared);
+        assertSame(container, prototype.container);
+    }
+
+    @Test
+    public void verifyPerLookupConstructorArguments()
+    {
+        final PerLookupArgPrototype first = container.get(PerLookupArgPrototype.class, true);
+        final PerLookupArgPrototype second = container.get(PerLookupArgPrototype.class, true);
+
+        assertNotNull(first.perLookup);
+        assertNotSame(first.perLookup, second.perLookup);
+        assertSame(container.get(Shared.class), first.shared);
+        assertSame(container, first.methodContainer);
+        assertEquals("configured", first.name);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+public class ScanCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheFile;
+    private final List<String> scanned = new ArrayList<>();
+
+    @Before
+    public void setupCacheFile() throws IOException
+    {
+        cacheFile = new File(folder.getRoot(), "cache/scan.cache");
+    }
+
+    @Test
+    public void verifyReuseWhenSizeAndTimeMatch() throws Exception
+    {
+        final File jar = jar("first.jar", "a/A.class");
+
+        assertEquals(Collections.singletonList("service.first"), scan(jar, "a"));
+        assertEquals(Collections.singletonList(jar.getPath()), scanned);
+
+        scanned.clear();
+        assertEquals(Collections.singletonList("service.first"), scan(jar, "a"));
+        assertTrue(scanned.isEmpty());
+    }
+
+    @Test
+    public void verifyHashMatchAfterTouch() throws Exception
+    {
+        final File jar = jar("first.jar", "a/A.class");
+        scan(jar, "a");
+
+        assertTrue(jar.setLastModified(jar.lastModified() + 60000));
+        scanned.clear();
+        assertEquals(Collections.singletonList("service.first"), scan(jar, "a"));
+        assertTrue(scanned.isEmpty());
+
+        // The new time was saved, the next start doesn't even hash
+        final String cache = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(cache.contains("\t" + jar.lastModified() + "\t"));
+    }
+
+    @Test
+    public void verifyOnlyChangedEntryIsRescanned() throws Exception
+    {
+        final File first = jar("first.jar", "a/A.class");
+        final File second = jar("second.jar", "b/B.class");
+        scan(first, second, "a,b");
+
+        jar("second.jar", "b/B.class", "b/C.class");
+        assertTrue(second.setLastModified(second.lastModified() + 60000));
+        scanned.clear();
+        scan(first, second, "a,b");
+        assertEquals(Collections.singletonList(second.getPath()), scanned);
+    }
+
+    @Test
+    public void verifyPackagesChangeRescans() throws Exception
+    {
+        final File jar = jar("first.jar", "a/A.class");
+        scan(jar, "a");
+
+        scanned.clear();
+        scan(jar, "a,b");
+        assertEquals(Collections.singletonList(jar.getPath()), scanned);
+
+        scanned.clear();
+        scan(jar, "a,b");
+        assertTrue(scanned.isEmpty());
+    }
+
+    @Test
+    public void verifyDirectoriesAreAlwaysRescanned() throws Exception
+    {
+        final File directory = folder.newFolder("classes");
+        scan(directory, "a");
+        scan(directory, "a");
+        assertEquals(2, scanned.size());
+    }
+
+    @Test
+    public void verifyCorruptCacheIsIgnored() throws Exception
+    {
+        final File jar = jar("first.jar", "a/A.class");
+        cacheFile.getParentFile().mkdirs();
+        Files.write(cacheFile.toPath(), ("# orbit container scan cache v4\nentry\t" + jar.getPath() + "\tnot a size\n").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Collections.singletonList("service.first"), scan(jar, "a"));
+        assertEquals(1, scanned.size());
+        assertTrue(Files.readAllLines(cacheFile.toPath()).contains("service\tservice.first"));
+    }
+
+    @Test
+    public void verifyOldFormatIsIgnored() throws Exception
+    {
+        final File jar = jar("first.jar", "a/A.class");
+        cacheFile.getParentFile().mkdirs();
+        Files.write(cacheFile.toPath(), ("# orbit container scan cache v3\nentry\t" + jar.getPath() + "\t" + jar.length()
+                + "\t" + jar.lastModified() + "\thash\ta\nservice\tstale.Service\n").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Collections.singletonList("service.first"), scan(jar, "a"));
+        assertEquals(1, scanned.size());
+        assertEquals("# orbit container scan cache v4", Files.readAllLines(cacheFile.toPath()).get(0));
+    }
+
+    private List<String> scan(final File file, final String packagesKey) throws Exception
+    {
+        final ScanCache scanCache = ScanCache.load(cacheFile);
+        try (ClassPathEntry entry = new ClassPathEntry(file))
+        {
+            final List<String> serviceClasses = scanCache.getServiceClasses(entry, packagesKey, this::scanEntry);
+            scanCache.save();
+            return serviceClasses;
+        }
+    }
+
+    private void scan(final File first, final File second, final String packagesKey) throws Exception
+    {
+        final ScanCache scanCache = ScanCache.load(cacheFile);
+        try (ClassPathEntry firstEntry = new ClassPathEntry(first); ClassPathEntry secondEntry = new ClassPathEntry(second))
+        {
+            scanCache.getServiceClasses(firstEntry, packagesKey, this::scanEntry);
+            scanCache.getServiceClasses(secondEntry, packagesKey, this::scanEntry);
+            scanCache.save();
+        }
+    }
+
+    private List<String> scanEntry(final ClassPathEntry entry)
+    {
+        scanned.add(entry.getPath());
+        final String name = new File(entry.getPath()).getName();
+        return Collections.singletonList("service." + name.replace(".jar", ""));
+    }
+
+    private File jar(final String name, final String... entries) throws IOException
+    {
+        final File jar = new File(folder.getRoot(), name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            for (final String entry : entries)
+            {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(entry.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
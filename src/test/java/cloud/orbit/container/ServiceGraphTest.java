@@ -0,0 +1,135 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ServiceGraphTest
+{
+    public static class Database
+    {
+
+    }
+
+    public static class Cache
+    {
+        @Inject
+        private Database database;
+    }
+
+    public static class Api
+    {
+        @Inject
+        private Cache cache;
+
+        // Providers resolve on demand, they are not a start dependency
+        @Inject
+        private Provider<Reporting> reporting;
+    }
+
+    public static class Reporting
+    {
+        private final Api api;
+
+        @Inject
+        public Reporting(final Api api)
+        {
+            this.api = api;
+        }
+    }
+
+    public static class Left
+    {
+        @Inject
+        private Right right;
+    }
+
+    public static class Right
+    {
+        @Inject
+        private Left left;
+    }
+
+    @Test
+    public void verifyDependenciesStartFirst()
+    {
+        final Database database = new Database();
+        final Cache cache = new Cache();
+        final Api api = new Api();
+        final Reporting reporting = new Reporting(api);
+
+        final ServiceGraph graph = new ServiceGraph(Arrays.asList(reporting, api, cache, database));
+
+        assertEquals(Arrays.asList(database, cache, api, reporting), graph.getStartOrder());
+        assertEquals(Collections.singletonList(database), graph.getDependencies(cache));
+        assertEquals(Collections.singletonList(cache), graph.getDependencies(api));
+        assertEquals(Collections.singletonList(api), graph.getDependencies(reporting));
+        assertEquals(Collections.singletonList(cache), graph.getDependents(database));
+        assertTrue(graph.getDependents(reporting).isEmpty());
+    }
+
+    @Test
+    public void verifyIndependentServicesKeepDiscoveryOrder()
+    {
+        final Database first = new Database();
+        final Database second = new Database();
+        final Left left = new Left();
+
+        final ServiceGraph graph = new ServiceGraph(Arrays.asList(second, first));
+        assertEquals(Arrays.asList(second, first), graph.getStartOrder());
+
+        // Services that aren't discovered are not dependencies
+        final ServiceGraph single = new ServiceGraph(Collections.singletonList(left));
+        assertEquals(Collections.singletonList(left), single.getStartOrder());
+        assertTrue(single.getDependencies(left).isEmpty());
+    }
+
+    @Test
+    public void verifyCyclesAreDropped()
+    {
+        final Left left = new Left();
+        final Right right = new Right();
+
+        final ServiceGraph graph = new ServiceGraph(Arrays.asList(left, right));
+
+        final List<Object> startOrder = graph.getStartOrder();
+        assertEquals(Arrays.asList(right, left), startOrder);
+        assertEquals(Collections.singletonList(right), graph.getDependencies(left));
+        assertTrue(graph.getDependencies(right).isEmpty());
+    }
+}
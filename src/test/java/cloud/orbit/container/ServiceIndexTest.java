@@ -0,0 +1,121 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ServiceIndexTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyIndexNames()
+    {
+        assertTrue(ServiceIndex.isIndex(ServiceIndex.LOCATION));
+        assertTrue(ServiceIndex.isIndex(ServiceIndex.location("orbit-hk2")));
+        assertFalse(ServiceIndex.isIndex(ServiceIndex.DIRECTORY + "container-services.txt"));
+        assertFalse(ServiceIndex.isIndex(ServiceIndex.DIRECTORY + "nested/container-services-a.idx"));
+        assertFalse(ServiceIndex.isIndex("container-services-a.idx"));
+    }
+
+    @Test
+    public void verifyClassLoaderIndexesMerged() throws Exception
+    {
+        final File directory = folder.newFolder("classes");
+        writeIndex(directory, ServiceIndex.location("directory"), "a.Directory");
+        writeIndex(directory, ServiceIndex.LOCATION, "a.Legacy");
+
+        // Listed through the directory entry jar tools write
+        final Map<String, String> indexes = new LinkedHashMap<>();
+        indexes.put(ServiceIndex.DIRECTORY, "");
+        indexes.put(ServiceIndex.location("first"), "a.First\n# comment\n\na.Shared\n");
+        indexes.put(ServiceIndex.location("second"), "a.Second\na.Shared\n");
+        final File jar = new File(folder.getRoot(), "shaded.jar");
+        ClassPathScannerTest.writeJar(jar, null, indexes);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ directory.toURI().toURL(), jar.toURI().toURL() }, null))
+        {
+            assertEquals(new HashSet<>(Arrays.asList("a.Directory", "a.Legacy", "a.First", "a.Second", "a.Shared")),
+                    new HashSet<>(ServiceIndex.read(classLoader)));
+            assertEquals(5, ServiceIndex.read(classLoader).size());
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ folder.newFolder("empty").toURI().toURL() }, null))
+        {
+            assertNull(ServiceIndex.read(classLoader));
+        }
+    }
+
+    @Test
+    public void verifyEntryIndexesMerged() throws Exception
+    {
+        final File directory = folder.newFolder("classes");
+        writeIndex(directory, ServiceIndex.location("b"), "a.Second\na.First");
+        writeIndex(directory, ServiceIndex.location("a"), "a.First");
+
+        try (ClassPathEntry entry = new ClassPathEntry(directory))
+        {
+            assertEquals(Arrays.asList("a.First", "a.Second"), ServiceIndex.read(entry));
+        }
+        try (ClassPathEntry entry = new ClassPathEntry(folder.newFolder("empty")))
+        {
+            assertNull(ServiceIndex.read(entry));
+        }
+
+        final File jar = new File(folder.getRoot(), "plain.jar");
+        ClassPathScannerTest.writeJar(jar, null, Collections.singletonMap(ServiceIndex.DIRECTORY + "other.idx", "a.Other"));
+        try (ClassPathEntry entry = new ClassPathEntry(jar))
+        {
+            assertNull(ServiceIndex.read(entry));
+        }
+    }
+
+    private static void writeIndex(final File root, final String location, final String content) throws Exception
+    {
+        final File index = new File(root, location);
+        index.getParentFile().mkdirs();
+        Files.write(index.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServiceInjectorTest
+{
+    private static final AtomicInteger created = new AtomicInteger();
+
+    private Container container;
+
+    @Singleton
+    public static class Shared
+    {
+
+    }
+
+    @PerLookup
+    public static class Counted
+    {
+        public Counted()
+        {
+            created.incrementAndGet();
+        }
+    }
+
+    public static class Target
+    {
+        @Inject
+        private Shared shared;
+
+        @Inject
+        private Counted counted;
+
+        @Inject
+        private Container container;
+    }
+
+    public static class SharedTarget
+    {
+        @Inject
+        private Shared shared;
+
+        @Inject
+        private Container container;
+    }
+
+    @Before
+    public void startContainer()
+    {
+        created.set(0);
+        container = ContainerFixture.start(Collections.emptyMap(), Shared.class);
+        ServiceLocatorUtilities.addClasses(container.getServiceLocator(), Counted.class);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyPerLookupIsNotCreatedToBuildTheInjector()
+    {
+        final Target first = new Target();
+        container.inject(first);
+        assertEquals(1, created.get());
+
+        final Target second = new Target();
+        container.inject(second);
+        assertEquals(2, created.get());
+        assertNotSame(first.counted, second.counted);
+        assertSame(first.shared, second.shared);
+        assertSame(container, second.container);
+    }
+
+    @Test
+    public void verifyConstantsAreInjectedDirectly()
+    {
+        final SharedTarget first = new SharedTarget();
+        container.inject(first);
+        final SharedTarget second = new SharedTarget();
+        container.inject(second);
+
+        assertSame(container.get(Shared.class), first.shared);
+        assertSame(first.shared, second.shared);
+        assertSame(container, first.container);
+        assertEquals(0, created.get());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.glassfish.hk2.api.PerLookup;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ServiceLookupTest
+{
+    private Container container;
+
+    @Singleton
+    public static class Shared
+    {
+
+    }
+
+    @PerLookup
+    public static class PerLookupService
+    {
+
+    }
+
+    public static class RegisteredLater
+    {
+
+    }
+
+    public static class SharedUser
+    {
+        @Inject
+        private Shared shared;
+    }
+
+    @Before
+    public void startContainer()
+    {
+        container = ContainerFixture.start(Collections.emptyMap(), Shared.class);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifyConstantsAreResolvedOnce()
+    {
+        final Shared shared = container.get(Shared.class);
+        assertNotNull(shared);
+        assertSame(shared, container.get(Shared.class));
+        assertSame(container, container.get(Container.class));
+    }
+
+    @Test
+    public void verifyPerLookupServicesAreNotKept()
+    {
+        ServiceLocatorUtilities.addClasses(container.getServiceLocator(), PerLookupService.class);
+
+        final PerLookupService first = container.get(PerLookupService.class);
+        assertNotNull(first);
+        assertNotSame(first, container.get(PerLookupService.class));
+    }
+
+    @Test
+    public void verifyRegistrationInvalidatesMisses()
+    {
+        assertNull(container.get(RegisteredLater.class, false));
+
+        final RegisteredLater registered = new RegisteredLater();
+        ServiceLocatorUtilities.addOneConstant(container.getServiceLocator(), registered);
+        assertSame(registered, container.get(RegisteredLater.class, false));
+    }
+
+    @Test
+    public void verifyRegistrationKeepsInjectors()
+    {
+        final SharedUser user = new SharedUser();
+        container.inject(user);
+        assertTrue(container.isInjectorCached(SharedUser.class));
+
+        ServiceLocatorUtilities.addOneConstant(container.getServiceLocator(), new RegisteredLater());
+        assertTrue(container.isInjectorCached(SharedUser.class));
+
+        container.stop().join();
+        assertFalse(container.isInjectorCached(SharedUser.class));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.concurrent.Task;
+import cloud.orbit.lifecycle.Startable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ServiceStartTest
+{
+    private static final List<String> started = new CopyOnWriteArrayList<>();
+    private static volatile CountDownLatch together;
+    private static final List<Boolean> startedTogether = new CopyOnWriteArrayList<>();
+
+    private Container container;
+
+    @Singleton
+    public static class Database implements Startable
+    {
+        @Override
+        public Task<?> start()
+        {
+            // Completes later, dependents must wait for the task and not just for the call
+            final Task<Void> task = new Task<>();
+            new Thread(() ->
+            {
+                sleep(100);
+                started.add("database");
+                task.complete(null);
+            }).start();
+            return task;
+        }
+    }
+
+    @Singleton
+    public static class Cache implements Startable
+    {
+        @Inject
+        private Database database;
+
+        @Override
+        public Task<?> start()
+        {
+            started.add("cache");
+            return Task.done();
+        }
+    }
+
+    @Singleton
+    public static class Api implements Startable
+    {
+        @Inject
+        private Cache cache;
+
+        @Override
+        public Task<?> start()
+        {
+            started.add("api");
+            return Task.done();
+        }
+    }
+
+    @Singleton
+    public static class FirstIndependent implements Startable
+    {
+        @Override
+        public Task<?> start()
+        {
+            return startTogether();
+        }
+    }
+
+    @Singleton
+    public static class SecondIndependent implements Startable
+    {
+        @Override
+        public Task<?> start()
+        {
+            return startTogether();
+        }
+    }
+
+    @Before
+    public void reset()
+    {
+        started.clear();
+        startedTogether.clear();
+        together = new CountDownLatch(2);
+    }
+
+    @After
+    public void stopContainer()
+    {
+        ContainerFixture.stop(container);
+    }
+
+    @Test
+    public void verifySequentialStartOrder()
+    {
+        // Discovered in the opposite order of their dependencies
+        container = ContainerFixture.start(Collections.emptyMap(), Api.class, Cache.class, Database.class);
+        assertEquals(Arrays.asList("database", "cache", "api"), started);
+    }
+
+    @Test
+    public void verifyConcurrentStartOrder()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("orbit.container.concurrentStart", "true"),
+                Api.class, Cache.class, Database.class);
+        assertEquals(Arrays.asList("database", "cache", "api"), started);
+    }
+
+    @Test
+    public void verifyConcurrentStartRunsIndependentServicesTogether()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("orbit.container.concurrentStart", "true"),
+                FirstIndependent.class, SecondIndependent.class);
+        assertEquals(Arrays.asList(true, true), startedTogether);
+    }
+
+    private static Task<?> startTogether()
+    {
+        together.countDown();
+        try
+        {
+            startedTogether.add(together.await(5, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+            startedTogether.add(false);
+        }
+        return Task.done();
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.concurrent.Task;
+import cloud.orbit.lifecycle.Startable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class ServiceStopTest
+{
+    private static final List<String> stopped = new CopyOnWriteArrayList<>();
+
+    private Container container;
+
+    @Singleton
+    public static class Database implements Startable
+    {
+        @Override
+        public Task<?> stop()
+        {
+            stopped.add("database");
+            return Task.done();
+        }
+    }
+
+    @Singleton
+    public static class Cache implements Startable
+    {
+        @Inject
+        private Database database;
+
+        @Override
+        public Task<?> stop()
+        {
+            // Completes later, the database must not stop before it does
+            final Task<Void> task = new Task<>();
+            new Thread(() ->
+            {
+                sleep(100);
+                stopped.add("cache");
+                task.complete(null);
+            }).start();
+            return task;
+        }
+    }
+
+    @Singleton
+    public static class Api implements Startable
+    {
+        @Inject
+        private Cache cache;
+
+        @Override
+        public Task<?> stop()
+        {
+            stopped.add("api");
+            return Task.done();
+        }
+    }
+
+    @Singleton
+    public static class Hung implements Startable
+    {
+        @Inject
+        private Database database;
+
+        @Override
+        public Task<?> stop()
+        {
+            return new Task<>();
+        }
+    }
+
+    @Singleton
+    public static class Slow implements Startable
+    {
+        @Override
+        public Task<?> stop()
+        {
+            final Task<Void> task = new Task<>();
+            new Thread(() ->
+            {
+                sleep(300);
+                stopped.add("slow");
+                task.complete(null);
+            }).start();
+            return task;
+        }
+    }
+
+    @Before
+    public void reset()
+    {
+        stopped.clear();
+    }
+
+    @After
+    public void shutdownLocator()
+    {
+        if (container != null)
+        {
+            container.getServiceLocator().shutdown();
+        }
+    }
+
+    @Test
+    public void verifySequentialStopOrder()
+    {
+        container = ContainerFixture.start(Collections.emptyMap(), Database.class, Cache.class, Api.class);
+        container.stop().join();
+        assertEquals(Arrays.asList("api", "cache", "database"), stopped);
+        assertTrue(container.getTimedOutServices().isEmpty());
+    }
+
+    @Test
+    public void verifyConcurrentStopOrder()
+    {
+        container = ContainerFixture.start(Collections.singletonMap("orbit.container.concurrentStop", "true"),
+                Database.class, Cache.class, Api.class);
+        container.stop().join();
+        assertEquals(Arrays.asList("api", "cache", "database"), stopped);
+    }
+
+    @Test
+    public void verifyStopTimeout()
+    {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("orbit.container.stopTimeoutMillis." + Hung.class.getName(), "200");
+        container = ContainerFixture.start(settings, Database.class, Hung.class);
+
+        final Object hung = container.get(Hung.class);
+        final long startTime = System.nanoTime();
+        container.stop().join();
+
+        // The hung service is given up on, what it depends on still stops
+        assertTrue((System.nanoTime() - startTime) / 1000000 < 5000);
+        assertEquals(Collections.singletonList(hung), container.getTimedOutServices());
+        assertEquals(Collections.singletonList("database"), stopped);
+    }
+
+    @Test
+    public void verifyPerClassStopTimeout()
+    {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("orbit.container.stopTimeoutMillis", "50");
+        settings.put("orbit.container.stopTimeoutMillis." + Slow.class.getName(), "5000");
+        container = ContainerFixture.start(settings, Slow.class, Database.class, Cache.class);
+
+        final Object cache = container.get(Cache.class);
+        container.stop().join();
+
+        assertEquals(Collections.singletonList(cache), container.getTimedOutServices());
+        assertTrue(stopped.contains("slow"));
+    }
+
+    private static void sleep(final long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container.config;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ContainerConfigImplTest
+{
+    private static ContainerConfigImpl roundTrip(final ContainerConfigImpl config) throws Exception
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(config);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            return (ContainerConfigImpl) in.readObject();
+        }
+    }
+
+    @Test
+    public void verifySerialization() throws Exception
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        config.put("orbit.name", "test");
+        config.putAll(Collections.singletonMap("orbit.hosts", Arrays.asList("a", "b")));
+        // Converted and sorted values are transient, they are rebuilt after reading
+        assertEquals("test", config.getAsString("orbit.name"));
+        assertEquals(2, config.getPrefixedValues("orbit").size());
+
+        final ContainerConfigImpl copy = roundTrip(config);
+        assertEquals(config.getAll(), copy.getAll());
+        assertEquals(2, copy.getPrefixedValues("orbit").size());
+
+        // The copy can still be written to, and independently of the original
+        copy.put("orbit.name", "copy");
+        copy.put("orbit.port", "8080");
+        assertEquals("copy", copy.getAsString("orbit.name"));
+        assertEquals(Integer.valueOf(8080), copy.getAsInt("orbit.port"));
+        assertEquals("test", config.getAsString("orbit.name"));
+        assertNull(config.getAsString("orbit.port"));
+    }
+
+    @Test
+    public void verifyConcurrentWrites() throws Exception
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        final int threadCount = 4;
+        final int keysPerThread = 200;
+        final CountDownLatch ready = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int thread = t;
+            threads[t] = new Thread(() ->
+            {
+                try
+                {
+                    ready.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                for (int i = 0; i < keysPerThread; i++)
+                {
+                    config.put("key." + thread + "." + i, String.valueOf(i));
+                }
+            });
+            threads[t].start();
+        }
+        ready.countDown();
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(threadCount * keysPerThread, config.getAll().size());
+    }
+
+    @Test
+    public void verifyUpdate()
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        final Map<String, Object> previousValues = new HashMap<>();
+        previousValues.put("same", "1");
+        previousValues.put("changed", "1");
+        previousValues.put("removed", "1");
+        previousValues.put("overridden", "1");
+        config.putAll(previousValues);
+        config.put("overridden", "put");
+        config.put("programmatic", "put");
+
+        final Map<String, Object> newValues = new HashMap<>();
+        newValues.put("same", "1");
+        newValues.put("changed", "2");
+        newValues.put("overridden", "2");
+        newValues.put("added", "2");
+
+        assertEquals(new HashSet<>(Arrays.asList("changed", "removed", "added")), config.update(previousValues, newValues));
+        assertEquals("1", config.getAsString("same"));
+        assertEquals("2", config.getAsString("changed"));
+        assertNull(config.getAsString("removed"));
+        assertEquals("put", config.getAsString("overridden"));
+        assertEquals("put", config.getAsString("programmatic"));
+        assertEquals("2", config.getAsString("added"));
+
+        final Map<String, Object> before = config.getAll();
+        assertTrue(config.update(newValues, newValues).isEmpty());
+        assertSame("nothing changed, the snapshot is kept", before, config.getAll());
+    }
+
+    @Test
+    public void verifyPrefixedValues()
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        for (final String key : Arrays.asList("actor", "actor.a", "actor.b.c", "actor..d", "actor./", "actor.\uffff",
+                "actor-x", "actor/x", "actors.x", "actoR.x", "act.x", "other.actor.x"))
+        {
+            config.put(key, key);
+        }
+
+        // The same entries as filtering every key by its prefix
+        final Map<String, Object> expected = new LinkedHashMap<>();
+        config.getAll().forEach((key, value) ->
+        {
+            if (key.startsWith("actor."))
+            {
+                expected.put(key, value);
+            }
+        });
+        assertEquals(5, expected.size());
+        assertEquals(expected, config.getPrefixedValues("actor"));
+
+        assertEquals(Collections.singletonMap("actor.b.c", "actor.b.c"), config.getPrefixedValues("actor.b"));
+        assertTrue(config.getPrefixedValues("missing").isEmpty());
+    }
+
+    @Test
+    public void verifyViewsAreSnapshots()
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        config.put("actor.a", "1");
+        final Map<String, Object> all = config.getAll();
+        final Map<String, Object> prefixed = config.getPrefixedValues("actor");
+        assertSame("the view is kept with the snapshot", all, config.getAll());
+
+        config.put("actor.b", "2");
+        assertEquals(1, all.size());
+        assertEquals(1, prefixed.size());
+        assertEquals(2, config.getAll().size());
+        assertEquals(2, config.getPrefixedValues("actor").size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void verifyPrefixedValuesReadOnly()
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        config.put("actor.a", "1");
+        config.getPrefixedValues("actor").put("actor.b", "2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void verifyAllReadOnly()
+    {
+        final ContainerConfigImpl config = new ContainerConfigImpl();
+        config.getAll().put("actor.b", "2");
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ Copyright (C) 2016 Electronic Arts Inc.  All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ 1.  Redistributions of source code must retain the above copyright
+     notice, this list of conditions and the following disclaimer.
+ 2.  Redistributions in binary form must reproduce the above copyright
+     notice, this list of conditions and the following disclaimer in the
+     documentation and/or other materials provided with the distribution.
+ 3.  Neither the name of Electronic Arts, Inc. ("EA") nor the names of
+     its contributors may be used to endorse or promote products derived
+     from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY ELECTRONIC ARTS AND ITS CONTRIBUTORS "AS IS" AND ANY
+ EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL ELECTRONIC ARTS OR ITS CONTRIBUTORS BE LIABLE FOR ANY
+ DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package cloud.orbit.container.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cloud.orbit.exception.UncheckedException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class YAMLConfigReaderTest
+{
+    private static final String VARIABLE = "orbit.test.variable";
+    private static final String LONG_VARIABLE = "orbit.test.longVariable";
+    private static final String LONG_VALUE = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Hands out at most a few chars per read, as a slow stream would.
+     */
+    private static class TricklingReader extends Reader
+    {
+        private final Reader in;
+        private final int chunk;
+
+        private TricklingReader(final String input, final int chunk)
+        {
+            this.in = new StringReader(input);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException
+        {
+            return in.read(cbuf, off, Math.min(len, chunk));
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    private static String substitute(final Reader in, final int readLength) throws IOException
+    {
+        final StringBuilder out = new StringBuilder();
+        try (Reader reader = new YAMLConfigReader.VariableSubstitutingReader(in))
+        {
+            final char[] chars = new char[readLength];
+            int n;
+            while ((n = reader.read(chars, 0, chars.length)) != -1)
+            {
+                out.append(chars, 0, n);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String substitute(final String input) throws IOException
+    {
+        final String result = substitute(new StringReader(input), 8192);
+        // However the input and the reads are split, the result is the same
+        for (final int chunk : Arrays.asList(1, 2, 3))
+        {
+            for (final int readLength : Arrays.asList(1, 2, 7))
+            {
+                assertEquals(result, substitute(new TricklingReader(input, chunk), readLength));
+            }
+        }
+        return result;
+    }
+
+    private static String fill(final int length)
+    {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    @Before
+    public void setVariables()
+    {
+        System.setProperty(VARIABLE, "value");
+        System.setProperty(LONG_VARIABLE, LONG_VALUE);
+    }
+
+    @After
+    public void clearVariables()
+    {
+        System.clearProperty(VARIABLE);
+        System.clearProperty(LONG_VARIABLE);
+    }
+
+    @Test
+    public void verifySubstitution() throws IOException
+    {
+        assertEquals("key: value", substitute("key: ${" + VARIABLE + "}"));
+        assertEquals("value-value", substitute("${" + VARIABLE + "}-${" + VARIABLE + "}"));
+        assertEquals("no variables", substitute("no variables"));
+        assertEquals("", substitute(""));
+    }
+
+    @Test
+    public void verifyDefaults() throws IOException
+    {
+        assertEquals("key: fallback", substitute("key: ${orbit.test.missing:fallback}"));
+        assertEquals("key: fallback", substitute("key: ${orbit.test.missing: fallback }"));
+        assertEquals("key: value", substitute("key: ${" + VARIABLE + ":fallback}"));
+        assertEquals("key: ", substitute("key: ${orbit.test.missing:}"));
+    }
+
+    @Test
+    public void verifyDollarSigns() throws IOException
+    {
+        assertEquals("cost: 5$", substitute("cost: 5$"));
+        assertEquals("$", substitute("$"));
+        assertEquals("a $ b", substitute("a $ b"));
+        assertEquals("$$", substitute("$$"));
+        assertEquals("$value", substitute("$${" + VARIABLE + "}"));
+        assertEquals("$value$", substitute("$${" + VARIABLE + "}$"));
+        assertEquals("{" + VARIABLE + "}", substitute("{" + VARIABLE + "}"));
+    }
+
+    @Test
+    public void verifyBufferBoundaries() throws IOException
+    {
+        // The reader buffers 8192 chars, a variable can start on the last of them
+        for (final int length : Arrays.asList(8190, 8191, 8192))
+        {
+            final String prefix = fill(length);
+            assertEquals(prefix + "value", substitute(new StringReader(prefix + "${" + VARIABLE + "}"), 8192));
+            assertEquals(prefix + "$", substitute(new StringReader(prefix + "$"), 8192));
+            assertEquals(prefix + "$x", substitute(new StringReader(prefix + "$x"), 8192));
+        }
+    }
+
+    @Test
+    public void verifyLongSubstitution() throws IOException
+    {
+        assertEquals("key: " + LONG_VALUE + ".", substitute("key: ${" + LONG_VARIABLE + "}."));
+        assertEquals(LONG_VALUE, substitute(new StringReader("${" + LONG_VARIABLE + "}"), 4));
+    }
+
+    @Test
+    public void verifySubstitutedValuesNotScanned() throws IOException
+    {
+        System.setProperty(VARIABLE, "${" + LONG_VARIABLE + "}");
+        assertEquals("${" + LONG_VARIABLE + "}", substitute("${" + VARIABLE + "}"));
+    }
+
+    @Test
+    public void verifyNestedVariables() throws IOException
+    {
+        // Variables don't nest, the first closing bracket ends the name, as it always did
+        assertEquals("${" + VARIABLE + "}", substitute("${orbit.test.missing:${" + VARIABLE + "}}"));
+        try
+        {
+            substitute("${orbit.test.${" + VARIABLE + "}}");
+            fail();
+        }
+        catch (UncheckedException e)
+        {
+            assertEquals("Could not find a value for property 'orbit.test.${" + VARIABLE + "'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void verifyUnknownVariable() throws IOException
+    {
+        try
+        {
+            substitute("key: ${orbit.test.missing}");
+            fail();
+        }
+        catch (UncheckedException e)
+        {
+            assertEquals("Could not find a value for property 'orbit.test.missing'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void verifyUnterminatedVariable() throws IOException
+    {
+        try
+        {
+            substitute("a: 1\nb: 2\nc: ${" + VARIABLE);
+            fail();
+        }
+        catch (UncheckedException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid config file. Could not find a closing curly bracket"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("at line:3"));
+        }
+    }
+
+    @Test
+    public void verifyMultiLineVariable() throws IOException
+    {
+        try
+        {
+            substitute("a: 1\n\nc: ${" + VARIABLE + "\nd: 4}\ne: 5");
+            fail();
+        }
+        catch (UncheckedException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid config file. File contains multi-line variable"));
+            assertTrue(e.getMessage(), e.getMessage().endsWith("at line: 3"));
+        }
+
+        // A line break just before the variable doesn't count as part of it
+        try
+        {
+            substitute("a: 1\n${" + VARIABLE + "\n}");
+            fail();
+        }
+        catch (UncheckedException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("at line: 2"));
+        }
+    }
+}